@@ -0,0 +1,109 @@
+package com.company.agent.api;
+
+import com.company.agent.api.dto.IngestionJobDto;
+import com.company.agent.application.KnowledgeIngestionService;
+import com.company.agent.domain.IngestionJob;
+import com.company.agent.infrastructure.ai.RerankBenchmark;
+import com.company.agent.infrastructure.ai.VectorSearchBenchmark;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/knowledge")
+@RequiredArgsConstructor
+@Slf4j
+public class KnowledgeController {
+
+    private final KnowledgeIngestionService ingestionService;
+
+    @PostMapping(value = "/ingest", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<IngestionJobDto> ingest(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "DEFAULT") String phase,
+            @RequestParam(required = false) String sourceId) throws IOException {
+
+        log.info("Recebendo documento para ingestão: file='{}', size={}, phase='{}'",
+                file.getOriginalFilename(), file.getSize(), phase);
+
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Arquivo vazio");
+        }
+
+        IngestionJob job = ingestionService.submit(file, phase, sourceId);
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(IngestionJobDto.fromDomain(job));
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<IngestionJobDto> getJob(@PathVariable UUID id) {
+        return ResponseEntity.ok(IngestionJobDto.fromDomain(ingestionService.getJob(id)));
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<IngestionJobDto>> listJobs() {
+        List<IngestionJobDto> response = ingestionService.listJobs().stream()
+                .map(IngestionJobDto::fromDomain)
+                .toList();
+
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/jobs/{id}/resume")
+    public ResponseEntity<IngestionJobDto> resumeJob(@PathVariable UUID id) {
+        IngestionJob job = ingestionService.resume(id);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(IngestionJobDto.fromDomain(job));
+    }
+
+    // Recall/latência da busca HNSW do tenant para cada ef_search informado
+    @PostMapping("/benchmark")
+    public ResponseEntity<List<VectorSearchBenchmark.Result>> benchmark(
+            @RequestParam(defaultValue = "20,40,80,160") List<Integer> efSearch,
+            @RequestParam(defaultValue = "50") int samples,
+            @RequestParam(defaultValue = "6") int topK) {
+
+        if (samples < 1 || samples > 1000 || topK < 1 || efSearch.isEmpty()) {
+            throw new IllegalArgumentException("Parâmetros de benchmark inválidos");
+        }
+
+        return ResponseEntity.ok(ingestionService.benchmarkSearch(efSearch, samples, topK));
+    }
+
+    // Latência adicionada e redundância entre chunks do re-ranker informado, contra o top-k direto
+    @PostMapping("/benchmark/rerank")
+    public ResponseEntity<RerankBenchmark.Result> benchmarkRerank(
+            @RequestParam(defaultValue = "mmr") String reranker,
+            @RequestParam(defaultValue = "50") int samples,
+            @RequestParam(defaultValue = "6") int topK,
+            @RequestParam(defaultValue = "3") int candidatesMultiplier,
+            @RequestParam(defaultValue = "40") int efSearch) {
+
+        if (samples < 1 || samples > 1000 || topK < 1 || candidatesMultiplier < 1 || efSearch < 1) {
+            throw new IllegalArgumentException("Parâmetros de benchmark inválidos");
+        }
+
+        return ResponseEntity.ok(ingestionService.benchmarkRerank(reranker, samples, topK, candidatesMultiplier,
+                efSearch));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalState(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage()));
+    }
+}
@@ -2,13 +2,18 @@ package com.company.agent.api;
 
 import com.company.agent.api.dto.CreateTaskRequest;
 import com.company.agent.api.dto.TaskDto;
+import com.company.agent.application.QueueSaturatedException;
 import com.company.agent.application.TaskService;
 import com.company.agent.domain.Task;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import jakarta.validation.Valid;
 import java.util.List;
@@ -79,6 +84,36 @@ public class TaskController {
         return ResponseEntity.ok(TaskDto.fromDomain(task));
     }
 
+    // Cria e executa em streaming numa única chamada; o primeiro evento ("task") traz o id da task
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> createAndStreamTask(@Valid @RequestBody CreateTaskRequest request) {
+        log.info("Criando task em streaming: prompt='{}', mode={}, flowId={}",
+                request.getPrompt().substring(0, Math.min(50, request.getPrompt().length())),
+                request.getMode(), request.getFlowId());
+
+        TaskService.StreamedTask streamed = taskService.createAndStreamTask(
+                request.getPrompt(), request.getMode(), request.getFlowId());
+
+        return Flux.just(ServerSentEvent.builder(streamed.task().getId().toString()).event("task").build())
+                .concatWith(toEvents(streamed.tokens()));
+    }
+
+    // Só para tasks PENDING ainda não reivindicadas pelo TaskDispatcher (senão 409)
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamTask(@PathVariable UUID id) {
+        return toEvents(taskService.streamTask(id));
+    }
+
+    // Retornar Flux libera a thread do servlet; os eventos são escritos de forma assíncrona
+    private static Flux<ServerSentEvent<String>> toEvents(Flux<String> tokens) {
+        return tokens
+                .map(token -> ServerSentEvent.builder(token).event("token").build())
+                .concatWithValues(ServerSentEvent.builder("").event("done").build())
+                .onErrorResume(e -> Flux.just(ServerSentEvent.builder(String.valueOf(e.getMessage()))
+                        .event("error")
+                        .build()));
+    }
+
     @PostMapping("/{id}/cancel")
     public ResponseEntity<Void> cancelTask(@PathVariable UUID id) {
         taskService.cancelTask(id);
@@ -96,4 +131,11 @@ public class TaskController {
         return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(Map.of("error", e.getMessage()));
     }
+
+    @ExceptionHandler(QueueSaturatedException.class)
+    public ResponseEntity<Map<String, String>> handleQueueSaturated(QueueSaturatedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
 }
@@ -0,0 +1,62 @@
+package com.company.agent.api.dto;
+
+import com.company.agent.domain.IngestionJob;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class IngestionJobDto {
+
+    private UUID id;
+    private String tenant;
+    private String phase;
+    private String sourceId;
+    private String fileName;
+    private IngestionJob.Status status;
+    private Integer totalUnits;
+    private int processedUnits;
+    private long chunksWritten;
+    private long chunksUnchanged;
+    private long chunksDeleted;
+    private Double progress;
+    private String errorMessage;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime updatedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime completedAt;
+
+    public static IngestionJobDto fromDomain(IngestionJob job) {
+        Double progress = job.getTotalUnits() != null && job.getTotalUnits() > 0
+                ? (double) job.getProcessedUnits() / job.getTotalUnits()
+                : null;
+
+        return IngestionJobDto.builder()
+                .id(job.getId())
+                .tenant(job.getTenant())
+                .phase(job.getPhase())
+                .sourceId(job.getSourceId())
+                .fileName(job.getFileName())
+                .status(job.getStatus())
+                .totalUnits(job.getTotalUnits())
+                .processedUnits(job.getProcessedUnits())
+                .chunksWritten(job.getChunksWritten())
+                .chunksUnchanged(job.getChunksUnchanged())
+                .chunksDeleted(job.getChunksDeleted())
+                .progress(progress)
+                .errorMessage(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+}
@@ -33,6 +33,10 @@ public class TaskDto {
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime completedAt;
 
+    private Integer promptTokens;
+    private Integer contextTokens;
+    private Integer completionTokens;
+
     public static TaskDto fromDomain(Task task) {
         return TaskDto.builder()
                 .id(task.getId())
@@ -47,6 +51,9 @@ public class TaskDto {
                 .updatedAt(task.getUpdatedAt())
                 .startedAt(task.getStartedAt())
                 .completedAt(task.getCompletedAt())
+                .promptTokens(task.getPromptTokens())
+                .contextTokens(task.getContextTokens())
+                .completionTokens(task.getCompletionTokens())
                 .build();
     }
 }
@@ -2,20 +2,34 @@ package com.company.agent.application;
 
 import com.company.agent.domain.*;
 import com.company.agent.infrastructure.ai.RagAdvisorConfig;
+import com.company.agent.infrastructure.ai.SemanticResponseCache;
+import com.company.agent.infrastructure.security.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
@@ -27,9 +41,16 @@ public class AgentOrchestrator {
     private final TaskRepository taskRepository;
     private final FlowRepository flowRepository;
     private final PhaseContextRepository phaseContextRepository;
-    private final TemplateEngine templateEngine;
+    private final ContextAssembler contextAssembler;
     private final ToolPolicy toolPolicy;
+    private final ToolCallExecutor toolCallExecutor;
     private final RagAdvisorConfig ragAdvisorConfig;
+    private final PhaseContextCache phaseContextCache;
+    private final SemanticResponseCache semanticResponseCache;
+    private final TaskLeases taskLeases;
+    private final TenantContext tenantContext;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
     @Value("${agent.rag.similarity-threshold:0.75}")
     private double similarityThreshold;
@@ -37,37 +58,39 @@ public class AgentOrchestrator {
     @Value("${agent.rag.top-k:6}")
     private int topK;
 
-    @Transactional
-    public Task run(Task task) {
-        log.info("Executando task {} para tenant {}", task.getId(), task.getTenant());
+    // Loop de tools no orquestrador: chamadas independentes do mesmo turno executam em paralelo
+    @Value("${agent.tools.parallel:true}")
+    private boolean parallelTools;
 
-        try {
-            // Marcar como executando
-            task.markRunning();
-            taskRepository.save(task);
+    @Value("${agent.tools.max-turns:10}")
+    private int maxToolTurns;
 
-            // Carregar contexto da fase, se disponível
-            PhaseContext phaseContext = loadPhaseContext(task);
-
-            // Configurar RAG com filtros da fase
-            RetrievalAugmentationAdvisor ragAdvisor = configureRagAdvisor(task, phaseContext);
+    // Sem @Transactional: a chamada ao LLM e às tools não pode segurar conexão do pool
+    public Task run(Task task) {
+        log.info("Executando task {} para tenant {}", task.getId(), task.getTenant());
 
-            // Preparar prompt do sistema
-            String systemPrompt = buildSystemPrompt(task, phaseContext);
+        AtomicLong connectionHoldNanos = new AtomicLong();
+        SemanticResponseCache.Lookup cacheLookup = null;
+        // Tools chamadas nesta execução (inclusive nas threads do ToolCallExecutor) enxergam a task
+        tenantContext.setCurrentTask(task.getId());
 
-            // Filtrar tools baseado na política da fase
-            ChatClient contextualizedClient = toolPolicy.applyPolicy(chatClient, phaseContext);
+        try {
+            PreparedRequest request = prepareRequest(task, connectionHoldNanos);
 
-            log.debug("Executando com contexto de fase: {}",
-                    phaseContext != null ? phaseContext.getPhaseName() : "DEFAULT");
+            // Consultar o cache semântico antes de chamar o modelo (opt-in por fase)
+            cacheLookup = semanticResponseCache.lookup(task, request.phaseContext(), request.promptScope());
 
-            // Executar com Spring AI
-            var response = contextualizedClient.prompt()
-                    .system(systemPrompt)
-                    .advisors(ragAdvisor)
-                    .user(task.getPrompt())
-                    .call()
-                    .content();
+            String response;
+            if (cacheLookup.isHit()) {
+                response = cacheLookup.cachedResult();
+                log.info("Task {} respondida pelo cache semântico", task.getId());
+            } else {
+                // Montar contexto no orçamento de tokens e executar com Spring AI (fora de transação)
+                response = parallelTools
+                        ? callWithParallelTools(task, request)
+                        : buildSpec(task, request).call().content();
+                task.recordCompletionTokens(contextAssembler.countTokens(response));
+            }
 
             // Marcar como sucesso
             task.markSucceeded(response);
@@ -78,7 +101,224 @@ public class AgentOrchestrator {
             task.markFailed("Erro na execução: " + e.getMessage());
         }
 
-        return taskRepository.save(task);
+        Task saved;
+        try {
+            saved = persistResult(task, connectionHoldNanos);
+        } finally {
+            taskLeases.release(task.getId());
+            tenantContext.clearTask();
+        }
+
+        if (cacheLookup != null) {
+            semanticResponseCache.store(cacheLookup, saved);
+        }
+
+        return saved;
+    }
+
+    // Versão em streaming: emite os tokens conforme chegam e persiste o conteúdo completo ao final.
+    // Tools sempre pelo ToolCallExecutor (mesmo loop de callWithParallelTools), independente de 'parallel'
+    public Flux<String> stream(Task task) {
+        log.info("Executando task {} em streaming para tenant {}", task.getId(), task.getTenant());
+
+        AtomicLong connectionHoldNanos = new AtomicLong();
+        StringBuilder content = new StringBuilder();
+
+        // Threads do Reactor não herdam o TenantContext da requisição: tenant e task são definidos em cada etapa
+        return Mono.fromCallable(inTaskContext(task, () -> {
+                    PreparedRequest request = prepareRequest(task, connectionHoldNanos);
+                    return new StreamingSession(request, assembleContext(task, request),
+                            toolCallExecutor.open(request.phaseContext()));
+                }))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(session -> streamTurns(task, session,
+                        List.of(new UserMessage(session.context().userText())), 1))
+                .doOnNext(content::append)
+                .concatWith(Mono.fromRunnable(() -> {
+                            task.markSucceeded(content.toString());
+                            task.recordCompletionTokens(contextAssembler.countTokens(content.toString()));
+                            persistResult(task, connectionHoldNanos);
+                            log.info("Task {} executada com sucesso em streaming", task.getId());
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then(Mono.<String>empty()))
+                .onErrorResume(e -> Mono.fromRunnable(() -> {
+                            log.error("Erro ao executar task {} em streaming: {}", task.getId(), e.getMessage(), e);
+                            task.markFailed("Erro na execução: " + e.getMessage());
+                            persistResult(task, connectionHoldNanos);
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then(Mono.<String>error(e)))
+                .doOnCancel(() -> Schedulers.boundedElastic().schedule(() -> {
+                    log.warn("Streaming da task {} cancelado pelo cliente", task.getId());
+                    task.markFailed("Streaming cancelado pelo cliente");
+                    persistResult(task, connectionHoldNanos);
+                }))
+                .doFinally(signal -> taskLeases.release(task.getId()));
+    }
+
+    // Executa com tenant e task da execução na thread atual, restaurando o contexto anterior ao final
+    private <T> Callable<T> inTaskContext(Task task, Callable<T> callable) {
+        return () -> {
+            String previousTenant = tenantContext.hasTenant() ? tenantContext.getCurrentTenant() : null;
+            UUID previousTask = tenantContext.getCurrentTask();
+
+            tenantContext.setCurrentTenant(task.getTenant());
+            tenantContext.setCurrentTask(task.getId());
+            try {
+                return callable.call();
+            } finally {
+                tenantContext.clear();
+                if (previousTenant != null) {
+                    tenantContext.setCurrentTenant(previousTenant);
+                }
+                if (previousTask != null) {
+                    tenantContext.setCurrentTask(previousTask);
+                }
+            }
+        };
+    }
+
+    private PreparedRequest prepareRequest(Task task, AtomicLong connectionHoldNanos) {
+        // Transação curta: marcar como executando e carregar contexto da fase
+        long claimStart = System.nanoTime();
+        PhaseContext phaseContext = transactionTemplate.execute(status -> {
+            if (task.getStatus() != Task.Status.RUNNING) {
+                task.markRunning();
+                taskRepository.save(task);
+            }
+            // Execução síncrona não passa pela TaskQueue; nas reivindicadas só regrava o lease deste nó
+            taskLeases.hold(task.getId());
+            return loadPhaseContext(task);
+        });
+        connectionHoldNanos.addAndGet(System.nanoTime() - claimStart);
+
+        // Configurar RAG com filtros da fase
+        RagAdvisorConfig.RagRetrieval rag = configureRag(task, phaseContext);
+
+        // Escopo do cache semântico: template do prompt do sistema + variáveis estáveis
+        String promptScope = contextAssembler.promptScope(task, phaseContext);
+
+        // Filtrar tools baseado na política da fase
+        ChatClient contextualizedClient = toolPolicy.applyPolicy(chatClient, phaseContext);
+
+        log.debug("Executando com contexto de fase: {}",
+                phaseContext != null ? phaseContext.getPhaseName() : "DEFAULT");
+
+        return new PreparedRequest(contextualizedClient, rag, phaseContext, promptScope);
+    }
+
+    // Recuperação RAG e montagem no orçamento de tokens: só quando o modelo vai de fato ser chamado
+    private ChatClient.ChatClientRequestSpec buildSpec(Task task, PreparedRequest request) {
+        ContextAssembler.AssembledContext context = assembleContext(task, request);
+
+        return request.client().prompt()
+                .system(context.systemPrompt())
+                .user(context.userText());
+    }
+
+    private ContextAssembler.AssembledContext assembleContext(Task task, PreparedRequest request) {
+        ContextAssembler.AssembledContext context =
+                contextAssembler.assemble(task, request.phaseContext(), request.rag());
+        task.recordPromptTokens(context.promptTokens(), context.contextTokens());
+        return context;
+    }
+
+    // Com proxyToolCalls o modelo devolve as chamadas de tool em vez de executá-las em sequência;
+    // o orquestrador executa as do turno em paralelo e devolve as respostas no próximo turno
+    private String callWithParallelTools(Task task, PreparedRequest request) {
+        ContextAssembler.AssembledContext context = assembleContext(task, request);
+        ToolCallExecutor.Session tools = toolCallExecutor.open(request.phaseContext());
+
+        List<Message> messages = new ArrayList<>();
+        messages.add(new UserMessage(context.userText()));
+
+        for (int turn = 1; ; turn++) {
+            AssistantMessage output = request.client().prompt()
+                    .system(context.systemPrompt())
+                    .messages(messages)
+                    .options(OpenAiChatOptions.builder().withProxyToolCalls(true).build())
+                    .call()
+                    .chatResponse()
+                    .getResult()
+                    .getOutput();
+
+            if (!output.hasToolCalls()) {
+                return output.getContent();
+            }
+
+            if (turn >= maxToolTurns) {
+                throw new IllegalStateException("Limite de " + maxToolTurns + " turnos com chamadas de tool excedido");
+            }
+
+            log.debug("Task {}: turno {} com {} chamadas de tool", task.getId(), turn, output.getToolCalls().size());
+
+            messages.add(output);
+            messages.add(new ToolResponseMessage(tools.execute(output.getToolCalls())));
+        }
+    }
+
+    // Um turno em streaming: o texto é emitido conforme chega e as chamadas de tool devolvidas pelo modelo
+    // (proxyToolCalls) rodam no ToolCallExecutor, com timeout por tool, limite de concorrência da task e o
+    // tenant/task da execução; as respostas abrem o próximo turno
+    private Flux<String> streamTurns(Task task, StreamingSession session, List<Message> messages, int turn) {
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        StringBuilder turnText = new StringBuilder();
+
+        return session.request().client().prompt()
+                .system(session.context().systemPrompt())
+                .messages(messages)
+                .options(OpenAiChatOptions.builder().withProxyToolCalls(true).build())
+                .stream()
+                .chatResponse()
+                .concatMap(response -> {
+                    if (response.getResult() == null || response.getResult().getOutput() == null) {
+                        return Flux.<String>empty();
+                    }
+                    AssistantMessage output = response.getResult().getOutput();
+                    if (output.hasToolCalls()) {
+                        toolCalls.addAll(output.getToolCalls());
+                    }
+                    String text = output.getContent();
+                    if (text == null || text.isEmpty()) {
+                        return Flux.<String>empty();
+                    }
+                    turnText.append(text);
+                    return Flux.just(text);
+                })
+                .concatWith(Flux.defer(() -> {
+                    if (toolCalls.isEmpty()) {
+                        return Flux.<String>empty();
+                    }
+                    if (turn >= maxToolTurns) {
+                        return Flux.<String>error(new IllegalStateException(
+                                "Limite de " + maxToolTurns + " turnos com chamadas de tool excedido"));
+                    }
+
+                    log.debug("Task {}: turno {} em streaming com {} chamadas de tool", task.getId(), turn, toolCalls.size());
+
+                    List<Message> next = new ArrayList<>(messages);
+                    next.add(new AssistantMessage(turnText.toString(), Map.of(), List.copyOf(toolCalls)));
+
+                    return Mono.fromCallable(inTaskContext(task, () -> session.tools().execute(toolCalls)))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMapMany(responses -> {
+                                next.add(new ToolResponseMessage(responses));
+                                return streamTurns(task, session, next, turn + 1);
+                            });
+                }));
+    }
+
+    private Task persistResult(Task task, AtomicLong connectionHoldNanos) {
+        // Transação curta: persistir o resultado
+        long persistStart = System.nanoTime();
+        Task saved = transactionTemplate.execute(status -> taskRepository.save(task));
+        connectionHoldNanos.addAndGet(System.nanoTime() - persistStart);
+
+        meterRegistry.timer("agent.task.connection.hold", "status", task.getStatus().name())
+                .record(connectionHoldNanos.get(), TimeUnit.NANOSECONDS);
+
+        return saved;
     }
 
     private PhaseContext loadPhaseContext(Task task) {
@@ -86,10 +326,15 @@ public class AgentOrchestrator {
             return null;
         }
 
-        Optional<Flow> flowOpt = flowRepository.findById(task.getFlowId());
+        return phaseContextCache.get(task.getFlowId(), flowId -> resolvePhaseContext(flowId, task))
+                .orElse(null);
+    }
+
+    private Optional<PhaseContext> resolvePhaseContext(UUID flowId, Task task) {
+        Optional<Flow> flowOpt = flowRepository.findById(flowId);
         if (flowOpt.isEmpty()) {
-            log.warn("Flow {} não encontrado para task {}", task.getFlowId(), task.getId());
-            return null;
+            log.warn("Flow {} não encontrado para task {}", flowId, task.getId());
+            return Optional.empty();
         }
 
         Flow flow = flowOpt.get();
@@ -99,54 +344,34 @@ public class AgentOrchestrator {
         if (contextOpt.isEmpty()) {
             log.warn("Contexto não encontrado para fase {} do flow {}",
                     flow.getCurrentPhase(), flow.getId());
-            return null;
         }
 
-        return contextOpt.get();
+        return contextOpt;
     }
 
-    private RetrievalAugmentationAdvisor configureRagAdvisor(Task task, PhaseContext phaseContext) {
+    private RagAdvisorConfig.RagRetrieval configureRag(Task task, PhaseContext phaseContext) {
+        // Modo de recuperação (vetorial/híbrido) e top-k podem ser definidos por fase
+        RagAdvisorConfig.RetrievalSettings retrieval = ragAdvisorConfig.retrievalSettings(phaseContext);
+
         if (phaseContext != null && phaseContext.hasRagFilter()) {
-            // Usar RAG advisor com filtro personalizado da fase
-            String combinedFilter = String.format("tenant == '%s' && (%s)",
-                    task.getTenant(), phaseContext.getRagFilter());
-            return ragAdvisorConfig.createRagAdvisorWithFilter(combinedFilter);
+            // Usar retriever (cacheado) com filtro personalizado da fase
+            return ragAdvisorConfig.retrievalForTenant(task.getTenant(), phaseContext.getRagFilter(), retrieval);
         } else {
-            // Usar RAG advisor padrão com filtro por tenant
-            return ragAdvisorConfig.createRagAdvisorForPhase(task.getTenant(), "DEFAULT");
+            // Usar retriever padrão com filtro por tenant
+            return ragAdvisorConfig.retrievalForPhase(task.getTenant(), "DEFAULT", retrieval);
         }
     }
 
-    private String buildSystemPrompt(Task task, PhaseContext phaseContext) {
-        String defaultPrompt = "Você é um agente executor de tarefas. " +
-                "Planeje brevemente suas ações e use as ferramentas disponíveis quando necessário. " +
-                "Mantenha um registro das ações executadas.";
+    private record StreamingSession(
+            PreparedRequest request,
+            ContextAssembler.AssembledContext context,
+            ToolCallExecutor.Session tools
+    ) {}
 
-        if (phaseContext == null || !phaseContext.hasSystemPromptTemplate()) {
-            return defaultPrompt;
-        }
-
-        try {
-            // Preparar variáveis para o template
-            Map<String, Object> templateVars = Map.of(
-                    "tenant", task.getTenant(),
-                    "taskId", task.getId().toString(),
-                    "flowId", task.getFlowId() != null ? task.getFlowId().toString() : "",
-                    "phaseName", phaseContext.getPhaseName(),
-                    "timestamp", LocalDateTime.now().toString()
-            );
-
-            // Adicionar variáveis do contexto
-            if (phaseContext.getVariables() != null) {
-                templateVars = new java.util.HashMap<>(templateVars);
-                templateVars.putAll(phaseContext.getVariables());
-            }
-
-            return templateEngine.render(phaseContext.getSystemPromptTemplate(), templateVars);
-
-        } catch (Exception e) {
-            log.warn("Erro ao renderizar template de prompt: {}", e.getMessage());
-            return defaultPrompt;
-        }
-    }
-}
\ No newline at end of file
+    private record PreparedRequest(
+            ChatClient client,
+            RagAdvisorConfig.RagRetrieval rag,
+            PhaseContext phaseContext,
+            String promptScope
+    ) {}
+}
@@ -0,0 +1,315 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.PhaseContext;
+import com.company.agent.domain.Task;
+import com.company.agent.infrastructure.ai.RagAdvisorConfig;
+import com.knuddels.jtokkit.api.EncodingType;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Monta system prompt + contexto RAG + prompt do usuário dentro do orçamento de tokens da fase,
+// contando tokens localmente: estouros são resolvidos (ou rejeitados) antes de chamar o modelo
+@Component
+@Slf4j
+public class ContextAssembler {
+
+    // Variáveis da fase: orçamento de tokens de entrada e prioridade (maior primeiro) das variáveis do template
+    static final String BUDGET_VARIABLE = "promptTokenBudget";
+    static final String PRIORITY_VARIABLE = "promptVariablePriority";
+
+    private static final String DEFAULT_SYSTEM_PROMPT = "Você é um agente executor de tarefas. " +
+            "Planeje brevemente suas ações e use as ferramentas disponíveis quando necessário. " +
+            "Mantenha um registro das ações executadas.";
+
+    // Variáveis geradas pelo sistema: nunca truncadas
+    private static final Set<String> BUILT_IN_VARIABLES = Set.of("tenant", "taskId", "flowId", "phaseName", "timestamp");
+    private static final Set<String> PER_TASK_VARIABLES = Set.of("taskId", "timestamp");
+
+    private static final String CHUNK_SEPARATOR = "\n\n";
+    private static final String CONTEXT_PLACEHOLDER = "{context}";
+    private static final String INPUT_PLACEHOLDER = "{input}";
+
+    private final TemplateEngine templateEngine;
+    private final MeterRegistry meterRegistry;
+    private final TokenCountEstimator tokenCounter;
+
+    @Value("${agent.context.window-tokens:128000}")
+    private int windowTokens;
+
+    @Value("${spring.ai.openai.chat.max-tokens:2000}")
+    private int maxCompletionTokens;
+
+    @Value("${agent.context.max-prompt-tokens:16000}")
+    private int defaultBudget;
+
+    // Schemas das tools e overhead das mensagens, fora da contagem local
+    @Value("${agent.context.reserve-tokens:500}")
+    private int reserveTokens;
+
+    // Abaixo disso um chunk aparado não agrega contexto útil e é descartado
+    @Value("${agent.context.min-chunk-tokens:64}")
+    private int minChunkTokens;
+
+    public ContextAssembler(TemplateEngine templateEngine,
+                            MeterRegistry meterRegistry,
+                            @Value("${spring.ai.openai.chat.model:gpt-4o-mini}") String model) {
+        this.templateEngine = templateEngine;
+        this.meterRegistry = meterRegistry;
+        // Contagem com o tokenizer do modelo configurado: cl100k subestima texto não inglês no gpt-4o
+        EncodingType encoding = encodingFor(model);
+        this.tokenCounter = new JTokkitTokenCountEstimator(encoding);
+        log.info("Contagem de tokens do modelo {} com {}", model, encoding.getName());
+    }
+
+    // Família gpt-4o / gpt-4.1 / o-series usa o200k_base; modelos anteriores (gpt-4, gpt-3.5) cl100k_base
+    static EncodingType encodingFor(String model) {
+        String name = model == null ? "" : model.toLowerCase();
+        if (name.startsWith("gpt-4o") || name.startsWith("gpt-4.1") || name.startsWith("gpt-5")
+                || name.matches("^o\\d.*") || name.startsWith("chatgpt-4o")) {
+            return EncodingType.O200K_BASE;
+        }
+        return EncodingType.CL100K_BASE;
+    }
+
+    // Identidade do prompt do sistema para o cache semântico: template + variáveis que não mudam a cada task
+    // (taskId e timestamp embutidos ficam de fora, senão nenhuma task da fase reaproveitaria outra)
+    public String promptScope(Task task, PhaseContext phaseContext) {
+        Map<String, Object> variables = templateVariables(task, phaseContext);
+        if (variables == null) {
+            return DEFAULT_SYSTEM_PROMPT;
+        }
+
+        Map<String, Object> stable = new TreeMap<>(variables);
+        for (String perTask : PER_TASK_VARIABLES) {
+            // Variável da fase com o mesmo nome sobrepõe a embutida e é estável
+            if (phaseContext.getVariables() == null || !phaseContext.getVariables().containsKey(perTask)) {
+                stable.remove(perTask);
+            }
+        }
+
+        return phaseContext.getSystemPromptTemplate() + "\u0000" + stable;
+    }
+
+    public int countTokens(String text) {
+        return text == null || text.isEmpty() ? 0 : tokenCounter.estimate(text);
+    }
+
+    public AssembledContext assemble(Task task, PhaseContext phaseContext, RagAdvisorConfig.RagRetrieval rag) {
+        int budget = budget(phaseContext);
+
+        Map<String, Object> variables = templateVariables(task, phaseContext);
+        String systemPrompt = render(phaseContext, variables);
+        int systemTokens = countTokens(systemPrompt);
+
+        // Mesmas strings que serão enviadas: só o prompt (sem chunks) ou o template com o contexto
+        String template = rag.userTextTemplate();
+        int promptOnlyTokens = countTokens(task.getPrompt());
+        int userTokens = countTokens(fillTemplate(template, "", task.getPrompt()));
+
+        // 1. Chunks em ordem de ranking no espaço restante: o primeiro que não cabe é aparado, os demais descartados
+        int available = budget - systemTokens - userTokens;
+        List<Document> documents = available >= minChunkTokens
+                ? rag.retriever().retrieve(new Query(task.getPrompt()))
+                : List.of();
+
+        List<String> chunks = new ArrayList<>();
+        int contextTokens = 0;
+        for (Document document : documents) {
+            int remaining = available - contextTokens - countTokens(CHUNK_SEPARATOR) * chunks.size();
+            int chunkTokens = countTokens(document.getContent());
+
+            if (chunkTokens <= remaining) {
+                chunks.add(document.getContent());
+                contextTokens += chunkTokens;
+            } else {
+                if (remaining >= minChunkTokens) {
+                    String trimmed = truncateToTokens(document.getContent(), remaining);
+                    chunks.add(trimmed);
+                    contextTokens += countTokens(trimmed);
+                }
+                break;
+            }
+        }
+
+        if (chunks.size() < documents.size()) {
+            log.debug("Task {}: {} de {} chunks no orçamento de {} tokens",
+                    task.getId(), chunks.size(), documents.size(), budget);
+            meterRegistry.counter("agent.context.truncations", "part", "chunks").increment();
+        }
+
+        // 2. Sem chunks e ainda acima do orçamento: truncar as variáveis de menor prioridade do template
+        if (chunks.isEmpty()) {
+            userTokens = promptOnlyTokens;
+        }
+        int overflow = systemTokens + userTokens - budget;
+        if (overflow > 0 && variables != null) {
+            for (String name : truncationOrder(phaseContext, variables)) {
+                String value = variables.get(name).toString();
+                int keep = Math.max(0, countTokens(value) - overflow);
+                variables.put(name, truncateToTokens(value, keep));
+
+                systemPrompt = render(phaseContext, variables);
+                systemTokens = countTokens(systemPrompt);
+                overflow = systemTokens + userTokens - budget;
+                meterRegistry.counter("agent.context.truncations", "part", "variables").increment();
+
+                if (overflow <= 0) {
+                    break;
+                }
+            }
+        }
+
+        if (overflow > 0) {
+            // Falha local e imediata: a chamada ao modelo falharia após o round trip completo
+            throw new IllegalStateException(String.format(
+                    "Prompt excede o orçamento de tokens da fase (%d > %d)", systemTokens + userTokens, budget));
+        }
+
+        String userText = chunks.isEmpty()
+                ? task.getPrompt()
+                : fillTemplate(template, String.join(CHUNK_SEPARATOR, chunks), task.getPrompt());
+
+        int promptTokens = systemTokens + countTokens(userText);
+
+        meterRegistry.summary("agent.context.tokens", "part", "prompt").record(promptTokens);
+        meterRegistry.summary("agent.context.tokens", "part", "context").record(contextTokens);
+
+        return new AssembledContext(systemPrompt, userText, promptTokens, contextTokens);
+    }
+
+    // Substituição em uma única passada sobre o template: '{input}' ou '{context}' dentro do texto dos
+    // chunks ou do prompt não são placeholders e ficam como estão
+    static String fillTemplate(String template, String context, String input) {
+        StringBuilder result = new StringBuilder(template.length() + context.length() + input.length());
+        int position = 0;
+        int brace;
+        while ((brace = template.indexOf('{', position)) >= 0) {
+            result.append(template, position, brace);
+            if (template.startsWith(CONTEXT_PLACEHOLDER, brace)) {
+                result.append(context);
+                position = brace + CONTEXT_PLACEHOLDER.length();
+            } else if (template.startsWith(INPUT_PLACEHOLDER, brace)) {
+                result.append(input);
+                position = brace + INPUT_PLACEHOLDER.length();
+            } else {
+                result.append('{');
+                position = brace + 1;
+            }
+        }
+        return result.append(template, position, template.length()).toString();
+    }
+
+    private int budget(PhaseContext phaseContext) {
+        int budget = defaultBudget;
+
+        if (phaseContext != null && phaseContext.getVariables() != null
+                && phaseContext.getVariables().get(BUDGET_VARIABLE) != null) {
+            Object value = phaseContext.getVariables().get(BUDGET_VARIABLE);
+            try {
+                budget = Integer.parseInt(value.toString());
+            } catch (NumberFormatException e) {
+                log.warn("Valor inválido para '{}': {}", BUDGET_VARIABLE, value);
+            }
+        }
+
+        // Nunca além da janela do modelo descontada a resposta (max-tokens)
+        return Math.min(budget, windowTokens - maxCompletionTokens) - reserveTokens;
+    }
+
+    // Variáveis fora da lista de prioridade primeiro (maiores antes), depois as listadas da menor para a maior
+    private List<String> truncationOrder(PhaseContext phaseContext, Map<String, Object> variables) {
+        List<String> priority = new ArrayList<>();
+        Object configured = phaseContext.getVariables().get(PRIORITY_VARIABLE);
+        if (configured instanceof List<?> names) {
+            names.forEach(name -> priority.add(name.toString()));
+        }
+
+        List<String> unlisted = variables.entrySet().stream()
+                .filter(entry -> entry.getValue() instanceof String)
+                .filter(entry -> !BUILT_IN_VARIABLES.contains(entry.getKey()))
+                .filter(entry -> !priority.contains(entry.getKey()))
+                .sorted(Comparator.comparingInt((Map.Entry<String, Object> entry) -> entry.getValue().toString().length())
+                        .reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+
+        List<String> order = new ArrayList<>(unlisted);
+        for (int i = priority.size() - 1; i >= 0; i--) {
+            String name = priority.get(i);
+            if (variables.get(name) instanceof String && !BUILT_IN_VARIABLES.contains(name)) {
+                order.add(name);
+            }
+        }
+        return order;
+    }
+
+    // Maior prefixo com até maxTokens tokens (busca binária sobre o tamanho em caracteres)
+    private String truncateToTokens(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            return "";
+        }
+
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (countTokens(text.substring(0, mid)) <= maxTokens) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return text.substring(0, low);
+    }
+
+    private Map<String, Object> templateVariables(Task task, PhaseContext phaseContext) {
+        if (phaseContext == null || !phaseContext.hasSystemPromptTemplate()) {
+            return null;
+        }
+
+        // Preparar variáveis para o template
+        Map<String, Object> templateVars = new HashMap<>();
+        templateVars.put("tenant", task.getTenant());
+        templateVars.put("taskId", task.getId().toString());
+        templateVars.put("flowId", task.getFlowId() != null ? task.getFlowId().toString() : "");
+        templateVars.put("phaseName", phaseContext.getPhaseName());
+        templateVars.put("timestamp", LocalDateTime.now().toString());
+
+        // Adicionar variáveis do contexto
+        if (phaseContext.getVariables() != null) {
+            templateVars.putAll(phaseContext.getVariables());
+        }
+
+        return templateVars;
+    }
+
+    private String render(PhaseContext phaseContext, Map<String, Object> variables) {
+        if (variables == null) {
+            return DEFAULT_SYSTEM_PROMPT;
+        }
+
+        try {
+            return templateEngine.render(phaseContext.getSystemPromptTemplate(), variables);
+        } catch (Exception e) {
+            log.warn("Erro ao renderizar template de prompt: {}", e.getMessage());
+            return DEFAULT_SYSTEM_PROMPT;
+        }
+    }
+
+    public record AssembledContext(String systemPrompt, String userText, int promptTokens, int contextTokens) {}
+}
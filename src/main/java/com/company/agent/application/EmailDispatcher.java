@@ -0,0 +1,237 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.EmailMessage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Envia o outbox de email em lotes: cada lote vai numa única conexão SMTP (JavaMailSender.send(MimeMessage...)),
+// com até 'concurrency' lotes/conexões em paralelo por nó
+@Component
+@Slf4j
+public class EmailDispatcher {
+
+    private final EmailOutbox outbox;
+    private final ObjectProvider<JavaMailSender> mailSender;
+    private final Timer batchLatency;
+    private final DistributionSummary batchSize;
+    private final Semaphore connections;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("email-dispatch-", 0).factory());
+
+    @Value("${agent.email.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.email.from:agent@localhost}")
+    private String from;
+
+    @Value("${agent.email.batch-size:50}")
+    private int maxBatchSize;
+
+    public EmailDispatcher(EmailOutbox outbox,
+                           ObjectProvider<JavaMailSender> mailSender,
+                           MeterRegistry meterRegistry,
+                           @Value("${agent.email.concurrency:2}") int concurrency) {
+        this.outbox = outbox;
+        this.mailSender = mailSender;
+        this.connections = new Semaphore(concurrency);
+        this.batchLatency = Timer.builder("agent.email.batch.latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("agent.email.batch.size")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${agent.email.poll-interval:PT1S}")
+    public void dispatch() {
+        JavaMailSender sender = mailSender.getIfAvailable();
+        if (!enabled || sender == null) {
+            return;
+        }
+
+        // Um lote por conexão livre; para quando o outbox não tem mais mensagens devidas
+        while (connections.tryAcquire()) {
+            List<EmailMessage> claimed;
+            try {
+                claimed = outbox.claimNext(maxBatchSize);
+            } catch (Exception e) {
+                connections.release();
+                log.error("Erro ao reivindicar emails pendentes: {}", e.getMessage(), e);
+                return;
+            }
+
+            if (claimed.isEmpty()) {
+                connections.release();
+                return;
+            }
+
+            executor.execute(() -> {
+                try {
+                    sendBatch(sender, claimed);
+                } finally {
+                    connections.release();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.email.maintenance-interval:PT5M}")
+    public void maintain() {
+        try {
+            outbox.requeueStale();
+            outbox.purgeFinished();
+        } catch (Exception e) {
+            log.error("Erro na manutenção do outbox de email: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void sendBatch(JavaMailSender sender, List<EmailMessage> batch) {
+        Map<MimeMessage, EmailMessage> prepared = new IdentityHashMap<>();
+
+        for (EmailMessage message : batch) {
+            try {
+                prepared.put(toMimeMessage(sender, message), message);
+            } catch (MessagingException e) {
+                // Mensagem que nem chega a ser montada (endereço inválido): não adianta tentar de novo
+                complete(message, e, true);
+            }
+        }
+
+        if (prepared.isEmpty()) {
+            return;
+        }
+
+        batchSize.record(prepared.size());
+        Map<Object, Exception> failures = Map.of();
+
+        Timer.Sample sample = Timer.start();
+        try {
+            sender.send(prepared.keySet().toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            // Falha de conexão marca o lote todo; falha de mensagem marca só ela
+            failures = e.getFailedMessages();
+            if (failures.isEmpty()) {
+                failures = allFailed(prepared, e);
+            }
+        } catch (MailException e) {
+            failures = allFailed(prepared, e);
+        } finally {
+            sample.stop(batchLatency);
+        }
+
+        List<EmailMessage> sent = new ArrayList<>(prepared.size());
+        for (Map.Entry<MimeMessage, EmailMessage> entry : prepared.entrySet()) {
+            Exception failure = failures.get(entry.getKey());
+            if (failure == null) {
+                sent.add(entry.getValue());
+            } else {
+                complete(entry.getValue(), failure, isPermanent(failure));
+            }
+        }
+
+        try {
+            if (!sent.isEmpty()) {
+                outbox.markSent(sent);
+            }
+        } catch (Exception e) {
+            // Enviados mas não marcados: voltam pela recuperação de SENDING (entrega ao menos uma vez)
+            log.error("Erro ao marcar {} emails como enviados: {}", sent.size(), e.getMessage(), e);
+        }
+    }
+
+    private MimeMessage toMimeMessage(JavaMailSender sender, EmailMessage message) throws MessagingException {
+        MimeMessage mimeMessage = sender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, StandardCharsets.UTF_8.name());
+
+        helper.setFrom(from);
+        helper.setTo(message.getTo().toArray(String[]::new));
+        if (message.getCc() != null && !message.getCc().isEmpty()) {
+            helper.setCc(message.getCc().toArray(String[]::new));
+        }
+        if (message.getBcc() != null && !message.getBcc().isEmpty()) {
+            helper.setBcc(message.getBcc().toArray(String[]::new));
+        }
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getBody());
+
+        // Permite ao destinatário/provedor identificar reenvios da mesma mensagem
+        mimeMessage.setHeader("X-Idempotency-Key", message.getIdempotencyKey());
+        return mimeMessage;
+    }
+
+    private void complete(EmailMessage message, Exception failure, boolean permanent) {
+        try {
+            outbox.markFailed(message, failure.getMessage(), permanent);
+        } catch (Exception e) {
+            log.error("Erro ao registrar falha do email {}: {}", message.getId(), e.getMessage(), e);
+        }
+    }
+
+    private static Map<Object, Exception> allFailed(Map<MimeMessage, EmailMessage> prepared, Exception failure) {
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        prepared.keySet().forEach(message -> failures.put(message, failure));
+        return failures;
+    }
+
+    // O código SMTP decide: 5xx é recusa definitiva (reenviar daria o mesmo resultado), 4xx é temporário
+    // (caixa cheia, greylisting, limite de taxa) e volta com backoff. Sem código SMTP na cadeia, só
+    // destinatário recusado ou endereço malformado são permanentes
+    private static boolean isPermanent(Exception failure) {
+        boolean rejected = false;
+        Throwable current = failure;
+        for (int depth = 0; current != null && depth < 10; depth++) {
+            // getCause() de MessagingException é a próxima exceção (uma por destinatário recusado)
+            int code = smtpReturnCode(current);
+            if (code >= 400 && code < 500) {
+                return false;
+            }
+            rejected |= code >= 500;
+            current = current.getCause();
+        }
+        return rejected || failure instanceof SendFailedException || failure instanceof AddressException;
+    }
+
+    private static int smtpReturnCode(Throwable failure) {
+        if (failure instanceof SMTPAddressFailedException address) {
+            return address.getReturnCode();
+        }
+        if (failure instanceof SMTPSenderFailedException sender) {
+            return sender.getReturnCode();
+        }
+        if (failure instanceof SMTPSendFailedException send) {
+            return send.getReturnCode();
+        }
+        return -1;
+    }
+}
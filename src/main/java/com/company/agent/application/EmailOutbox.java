@@ -0,0 +1,119 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.EmailMessage;
+import com.company.agent.domain.EmailMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Estado das mensagens do outbox de email (gravadas pela EmailTool) durante o envio pelo EmailDispatcher
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutbox {
+
+    private final EmailMessageRepository repository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${agent.email.retry.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${agent.email.retry.initial-backoff:PT30S}")
+    private Duration initialBackoff;
+
+    @Value("${agent.email.retry.max-backoff:PT1H}")
+    private Duration maxBackoff;
+
+    @Value("${agent.email.stale-after:PT10M}")
+    private Duration staleAfter;
+
+    @Value("${agent.email.retention:P7D}")
+    private Duration retention;
+
+    @Transactional
+    public List<EmailMessage> claimNext(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        // Bloqueio + marcação como SENDING na mesma transação: outros nós pulam as linhas bloqueadas
+        return repository.lockNextDue(limit).stream()
+                .map(message -> {
+                    message.markSending();
+                    return repository.save(message);
+                })
+                .toList();
+    }
+
+    @Transactional
+    public void markSent(List<EmailMessage> messages) {
+        LocalDateTime now = LocalDateTime.now();
+        for (EmailMessage message : messages) {
+            message.markSent();
+            repository.save(message);
+            meterRegistry.timer("agent.email.delivery.delay")
+                    .record(Duration.between(message.getCreatedAt() != null ? message.getCreatedAt() : now, now));
+        }
+        meterRegistry.counter("agent.email.sent", "outcome", "sent").increment(messages.size());
+    }
+
+    // Falha permanente (endereço recusado, mensagem inválida) ou tentativas esgotadas: FAILED;
+    // senão volta para PENDING com backoff exponencial e jitter
+    @Transactional
+    public void markFailed(EmailMessage message, String error, boolean permanent) {
+        if (permanent || message.getAttempts() >= maxAttempts) {
+            message.markFailed(error);
+            repository.save(message);
+            meterRegistry.counter("agent.email.sent", "outcome", "failed").increment();
+            log.warn("Email {} descartado após {} tentativas: {}", message.getId(), message.getAttempts(), error);
+            return;
+        }
+
+        Duration backoff = backoff(message.getAttempts());
+        message.scheduleRetry(error, LocalDateTime.now().plus(backoff));
+        repository.save(message);
+        meterRegistry.counter("agent.email.sent", "outcome", "retry").increment();
+        log.info("Email {} falhou (tentativa {}), nova tentativa em {}: {}",
+                message.getId(), message.getAttempts(), backoff, error);
+    }
+
+    // Nó que caiu no meio do envio: mensagens em SENDING voltam para a fila (entrega ao menos uma vez)
+    @Transactional
+    public int requeueStale() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(staleAfter);
+        int requeued = repository.requeueSendingUpdatedBefore(cutoff);
+
+        if (requeued > 0) {
+            log.warn("{} emails em SENDING desde antes de {} devolvidos para a fila", requeued, cutoff);
+        }
+
+        return requeued;
+    }
+
+    // Mensagens concluídas só são mantidas pela retenção, que é também a janela de deduplicação
+    @Transactional
+    public int purgeFinished() {
+        int deleted = repository.deleteFinishedUpdatedBefore(LocalDateTime.now().minus(retention));
+
+        if (deleted > 0) {
+            log.debug("{} emails concluídos removidos do outbox", deleted);
+        }
+
+        return deleted;
+    }
+
+    private Duration backoff(int attempts) {
+        long exponential = initialBackoff.toMillis() << Math.min(Math.max(attempts - 1, 0), 20);
+        long capped = Math.min(exponential, maxBackoff.toMillis());
+        // Jitter de até 20% para não reenviar um lote inteiro no mesmo instante
+        return Duration.ofMillis(capped + ThreadLocalRandom.current().nextLong(capped / 5 + 1));
+    }
+}
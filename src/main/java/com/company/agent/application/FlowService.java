@@ -4,6 +4,7 @@ import com.company.agent.domain.Flow;
 import com.company.agent.domain.FlowRepository;
 import com.company.agent.domain.PhaseContext;
 import com.company.agent.domain.PhaseContextRepository;
+import com.company.agent.infrastructure.ai.RagAdvisorConfig;
 import com.company.agent.infrastructure.security.TenantContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +24,8 @@ public class FlowService {
     private final FlowRepository flowRepository;
     private final PhaseContextRepository phaseContextRepository;
     private final TenantContext tenantContext;
+    private final PhaseContextCache phaseContextCache;
+    private final RagAdvisorConfig ragAdvisorConfig;
 
     @Transactional
     public Flow createFlow(String name, String description, String initialPhase) {
@@ -86,6 +89,7 @@ public class FlowService {
         flow.advanceToPhase(targetPhase);
 
         Flow savedFlow = flowRepository.save(flow);
+        phaseContextCache.invalidate(flowId);
 
         log.info("Flow {} avançado de {} para {} no tenant {}",
                 flowId, previousPhase, targetPhase, tenant);
@@ -116,6 +120,8 @@ public class FlowService {
                         .createdAt(LocalDateTime.now())
                         .build());
 
+        String previousRagFilter = context.getRagFilter();
+
         // Atualizar campos
         context.setVariables(variables);
         context.setToolPolicy(toolPolicy);
@@ -124,6 +130,11 @@ public class FlowService {
         context.setUpdatedAt(LocalDateTime.now());
 
         PhaseContext savedContext = phaseContextRepository.save(context);
+        phaseContextCache.invalidate(flowId);
+
+        if (previousRagFilter != null && !previousRagFilter.equals(ragFilter)) {
+            ragAdvisorConfig.evictRagFilter(tenant, previousRagFilter);
+        }
 
         log.info("Contexto da fase {} atualizado para flow {} no tenant {}",
                 phaseName, flowId, tenant);
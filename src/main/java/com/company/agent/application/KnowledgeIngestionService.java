@@ -0,0 +1,349 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.IngestionJob;
+import com.company.agent.domain.IngestionJobRepository;
+import com.company.agent.infrastructure.ai.DocumentUnitReader;
+import com.company.agent.infrastructure.ai.RerankBenchmark;
+import com.company.agent.infrastructure.ai.VectorIndexManager;
+import com.company.agent.infrastructure.ai.VectorSearchBenchmark;
+import com.company.agent.infrastructure.ai.VectorStoreWriter;
+import com.company.agent.infrastructure.security.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Service
+@Slf4j
+public class KnowledgeIngestionService implements DisposableBean {
+
+    private final IngestionJobRepository jobRepository;
+    private final EmbeddingModel embeddingModel;
+    private final VectorStoreWriter vectorStoreWriter;
+    private final VectorIndexManager vectorIndexManager;
+    private final VectorSearchBenchmark vectorSearchBenchmark;
+    private final RerankBenchmark rerankBenchmark;
+    private final TenantContext tenantContext;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Executor ingestionExecutor;
+    private final ExecutorService embeddingPool;
+    private final TokenTextSplitter splitter;
+
+    @Value("${agent.ingestion.spool-dir:/tmp/agent-ingestion}")
+    private String spoolDir;
+
+    @Value("${agent.ingestion.text-unit-chars:16000}")
+    private int textUnitChars;
+
+    @Value("${agent.ingestion.embedding-batch-size:100}")
+    private int embeddingBatchSize;
+
+    private final int embeddingParallelism;
+
+    public KnowledgeIngestionService(IngestionJobRepository jobRepository,
+                                     EmbeddingModel embeddingModel,
+                                     VectorStoreWriter vectorStoreWriter,
+                                     VectorIndexManager vectorIndexManager,
+                                     VectorSearchBenchmark vectorSearchBenchmark,
+                                     RerankBenchmark rerankBenchmark,
+                                     TenantContext tenantContext,
+                                     TransactionTemplate transactionTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Qualifier("ingestionExecutor") Executor ingestionExecutor,
+                                     @Value("${agent.ingestion.embedding-parallelism:4}") int embeddingParallelism,
+                                     @Value("${agent.ingestion.chunk-size-tokens:800}") int chunkSizeTokens) {
+        this.jobRepository = jobRepository;
+        this.embeddingModel = embeddingModel;
+        this.vectorStoreWriter = vectorStoreWriter;
+        this.vectorIndexManager = vectorIndexManager;
+        this.vectorSearchBenchmark = vectorSearchBenchmark;
+        this.rerankBenchmark = rerankBenchmark;
+        this.tenantContext = tenantContext;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.ingestionExecutor = ingestionExecutor;
+        this.embeddingParallelism = embeddingParallelism;
+        // Pool fixo limita as chamadas de embedding simultâneas de todos os jobs do nó
+        this.embeddingPool = Executors.newFixedThreadPool(embeddingParallelism,
+                Thread.ofVirtual().name("ingestion-embed-", 0).factory());
+        this.splitter = new TokenTextSplitter(chunkSizeTokens, 350, 5, 10000, true);
+    }
+
+    public IngestionJob submit(MultipartFile file, String phase, String sourceId) throws IOException {
+        String tenant = tenantContext.getCurrentTenant();
+        String fileName = file.getOriginalFilename();
+        String source = sourceId != null && !sourceId.isBlank() ? sourceId : fileName;
+
+        // Reingestão substitui a fonte inteira (órfãos são removidos): um job ativo por fonte
+        if (jobRepository.existsBySource(tenant, source,
+                List.of(IngestionJob.Status.PENDING, IngestionJob.Status.RUNNING))) {
+            throw new IllegalStateException("Já existe uma ingestão em andamento para a fonte: " + source);
+        }
+
+        UUID jobId = UUID.randomUUID();
+
+        // Mover o upload (já em disco pelo multipart) para o spool: nada é bufferizado em memória
+        Path spoolPath = Paths.get(spoolDir, tenant, jobId.toString());
+        Files.createDirectories(spoolPath.getParent());
+        file.transferTo(spoolPath);
+
+        IngestionJob job = IngestionJob.builder()
+                .id(jobId)
+                .tenant(tenant)
+                .phase(phase)
+                .sourceId(source)
+                .fileName(fileName)
+                .contentType(file.getContentType())
+                .spoolPath(spoolPath.toString())
+                .status(IngestionJob.Status.PENDING)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+
+        IngestionJob saved = jobRepository.save(job);
+
+        log.info("Job de ingestão {} criado para tenant {} (arquivo {}, fase {})",
+                jobId, tenant, fileName, phase);
+
+        ingestionExecutor.execute(() -> process(jobId));
+        return saved;
+    }
+
+    public IngestionJob getJob(UUID jobId) {
+        String tenant = tenantContext.getCurrentTenant();
+
+        return jobRepository.findById(jobId)
+                .filter(job -> tenant.equals(job.getTenant()))
+                .orElseThrow(() -> new IllegalArgumentException("Job de ingestão não encontrado: " + jobId));
+    }
+
+    public List<IngestionJob> listJobs() {
+        return jobRepository.findByTenant(tenantContext.getCurrentTenant());
+    }
+
+    public IngestionJob resume(UUID jobId) {
+        IngestionJob job = getJob(jobId);
+
+        if (job.getStatus() != IngestionJob.Status.FAILED) {
+            throw new IllegalStateException("Job " + jobId + " não pode ser retomado. Status atual: " + job.getStatus());
+        }
+
+        ingestionExecutor.execute(() -> process(jobId));
+        return job;
+    }
+
+    // Retoma jobs interrompidos (ex.: restart do nó) cujo arquivo de spool ainda existe localmente
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        List<IngestionJob> interrupted = jobRepository.findByStatusIn(
+                List.of(IngestionJob.Status.PENDING, IngestionJob.Status.RUNNING));
+
+        for (IngestionJob job : interrupted) {
+            if (Files.exists(Paths.get(job.getSpoolPath()))) {
+                log.info("Retomando job de ingestão {} a partir da unidade {}", job.getId(), job.getProcessedUnits());
+                ingestionExecutor.execute(() -> process(job.getId()));
+            }
+        }
+    }
+
+    public List<VectorSearchBenchmark.Result> benchmarkSearch(List<Integer> efSearchValues, int samples, int topK) {
+        return vectorSearchBenchmark.run(tenantContext.getCurrentTenant(), efSearchValues, samples, topK);
+    }
+
+    public RerankBenchmark.Result benchmarkRerank(String reranker, int samples, int topK, int candidatesMultiplier,
+                                                  int efSearch) {
+        return rerankBenchmark.run(tenantContext.getCurrentTenant(), reranker, samples, topK, candidatesMultiplier,
+                efSearch);
+    }
+
+    @Override
+    public void destroy() {
+        embeddingPool.shutdownNow();
+    }
+
+    private void process(UUID jobId) {
+        IngestionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || !job.canBeResumed()) {
+            return;
+        }
+
+        job.markRunning();
+        job = jobRepository.save(job);
+
+        Path spoolPath = Paths.get(job.getSpoolPath());
+
+        try (DocumentUnitReader reader = DocumentUnitReader.open(spoolPath, job.isPdf(), textUnitChars)) {
+            if (reader.totalUnits() != null && job.getTotalUnits() == null) {
+                job.setTotalUnits(reader.totalUnits());
+                job = jobRepository.save(job);
+            }
+
+            int unitIndex = job.getProcessedUnits();
+            reader.skip(unitIndex);
+
+            // Agrupa chunks de unidades consecutivas até preencher todos os lotes paralelos
+            int groupSize = embeddingBatchSize * embeddingParallelism;
+            List<Document> group = new ArrayList<>(groupSize);
+
+            String text;
+            while ((text = reader.next()) != null) {
+                group.addAll(chunk(job, unitIndex, text));
+                unitIndex++;
+
+                if (group.size() >= groupSize) {
+                    job = writeGroup(job, group, unitIndex);
+                    group = new ArrayList<>(groupSize);
+                }
+            }
+
+            job = writeGroup(job, group, unitIndex);
+            job = complete(job);
+
+            Files.deleteIfExists(spoolPath);
+
+            // Tenant cresceu além do limite: ganha (ou atualiza) seu índice HNSW parcial
+            vectorIndexManager.ensureTenantIndex(job.getTenant());
+
+            log.info("Job de ingestão {} concluído: {} unidades, {} chunks novos, {} inalterados, {} removidos",
+                    jobId, job.getProcessedUnits(), job.getChunksWritten(),
+                    job.getChunksUnchanged(), job.getChunksDeleted());
+
+        } catch (Exception e) {
+            log.error("Erro no job de ingestão {}: {}", jobId, e.getMessage(), e);
+            job.markFailed("Erro na ingestão: " + e.getMessage());
+            jobRepository.save(job);
+        }
+    }
+
+    private List<Document> chunk(IngestionJob job, int unitIndex, String text) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("tenant", job.getTenant());
+        metadata.put("phase", job.getPhase());
+        metadata.put("source", job.getSourceId());
+        metadata.put("unit", unitIndex);
+        metadata.put("ingestion_job", job.getId().toString());
+
+        List<Document> chunks = splitter.apply(List.of(new Document(text, metadata)));
+
+        List<Document> identified = new ArrayList<>(chunks.size());
+        for (Document chunk : chunks) {
+            String contentHash = contentHash(chunk.getContent());
+            Map<String, Object> chunkMetadata = new HashMap<>(chunk.getMetadata());
+            chunkMetadata.put("content_hash", contentHash);
+
+            // Id determinístico por (tenant, fonte, conteúdo): o mesmo trecho reingerido mantém o id
+            String id = UUID.nameUUIDFromBytes((job.getTenant() + ":" + job.getSourceId() + ":" + contentHash)
+                    .getBytes(StandardCharsets.UTF_8)).toString();
+            identified.add(new Document(id, chunk.getContent(), chunkMetadata));
+        }
+        return identified;
+    }
+
+    private IngestionJob writeGroup(IngestionJob job, List<Document> group, int processedUnits) throws Exception {
+        // Trechos repetidos na fonte geram o mesmo id: embedar apenas uma vez
+        Map<String, Document> unique = new LinkedHashMap<>();
+        group.forEach(document -> unique.putIfAbsent(document.getId(), document));
+
+        // Diff com o que já está indexado: só chunks novos ou alterados vão para o modelo
+        Set<String> unchanged = vectorStoreWriter.findExisting(unique.keySet());
+        List<Document> changed = unique.values().stream()
+                .filter(document -> !unchanged.contains(document.getId()))
+                .toList();
+
+        List<float[]> embeddings = embed(changed);
+
+        // Chunks e progresso na mesma transação: o ponto de retomada nunca passa do que foi gravado
+        IngestionJob saved = transactionTemplate.execute(status -> {
+            if (!changed.isEmpty()) {
+                vectorStoreWriter.write(changed, embeddings);
+            }
+            vectorStoreWriter.markSeen(unique.values().stream()
+                    .filter(document -> unchanged.contains(document.getId()))
+                    .toList());
+            job.recordProgress(processedUnits, changed.size(), unchanged.size());
+            return jobRepository.save(job);
+        });
+
+        countChunks("embedded", changed.size());
+        countChunks("unchanged", unchanged.size());
+        return saved;
+    }
+
+    // Remoção dos órfãos e conclusão do job na mesma transação: a fonte passa da versão
+    // anterior para a nova de uma vez, sem janela em que chunks removidos continuem visíveis
+    private IngestionJob complete(IngestionJob job) {
+        IngestionJob saved = transactionTemplate.execute(status -> {
+            int deleted = vectorStoreWriter.deleteOrphans(job.getTenant(), job.getSourceId(), job.getId());
+            job.markCompleted(deleted);
+            return jobRepository.save(job);
+        });
+
+        countChunks("deleted", saved.getChunksDeleted());
+        return saved;
+    }
+
+    private void countChunks(String result, long count) {
+        if (count > 0) {
+            meterRegistry.counter("agent.ingestion.chunks", "result", result).increment(count);
+        }
+    }
+
+    private String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private List<float[]> embed(List<Document> documents) throws InterruptedException, ExecutionException {
+        List<Future<List<float[]>>> batches = new ArrayList<>();
+
+        for (int start = 0; start < documents.size(); start += embeddingBatchSize) {
+            List<String> texts = documents.subList(start, Math.min(start + embeddingBatchSize, documents.size()))
+                    .stream()
+                    .map(Document::getContent)
+                    .toList();
+            batches.add(embeddingPool.submit(() -> embeddingModel.embed(texts)));
+        }
+
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        for (Future<List<float[]>> batch : batches) {
+            embeddings.addAll(batch.get());
+        }
+        return embeddings;
+    }
+}
@@ -0,0 +1,75 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.PhaseContext;
+import com.company.agent.infrastructure.persistence.PgNotificationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+// Cache do PhaseContext resolvido para a fase atual de cada flow
+@Component
+@Slf4j
+public class PhaseContextCache {
+
+    static final String CHANGE_CHANNEL = "phase_context_changed";
+
+    private final Cache<UUID, Optional<PhaseContext>> cache;
+    private final PgNotificationBus notificationBus;
+
+    public PhaseContextCache(PgNotificationBus notificationBus,
+                             MeterRegistry meterRegistry,
+                             @Value("${agent.cache.phase-context.max-size:10000}") long maxSize,
+                             @Value("${agent.cache.phase-context.ttl:PT5M}") Duration ttl) {
+        this.notificationBus = notificationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "phaseContext");
+        notificationBus.subscribe(CHANGE_CHANNEL, this::evictLocal);
+    }
+
+    public Optional<PhaseContext> get(UUID flowId, Function<UUID, Optional<PhaseContext>> loader) {
+        return cache.get(flowId, loader);
+    }
+
+    // Invalida após o commit (local e nos demais nós), para não recarregar o valor antigo
+    public void invalidate(UUID flowId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAndPublish(flowId);
+                }
+            });
+        } else {
+            evictAndPublish(flowId);
+        }
+    }
+
+    private void evictAndPublish(UUID flowId) {
+        cache.invalidate(flowId);
+        notificationBus.publish(CHANGE_CHANNEL, flowId.toString());
+    }
+
+    private void evictLocal(String payload) {
+        try {
+            cache.invalidate(UUID.fromString(payload));
+        } catch (IllegalArgumentException e) {
+            log.warn("Notificação de contexto inválida: {}", payload);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.company.agent.application;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class QueueSaturatedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public QueueSaturatedException(long pendingTasks, Duration retryAfter) {
+        super("Fila de tasks saturada (" + pendingTasks + " pendentes). Tente novamente mais tarde");
+        this.retryAfter = retryAfter;
+    }
+}
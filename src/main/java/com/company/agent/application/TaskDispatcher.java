@@ -0,0 +1,86 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.Task;
+import com.company.agent.infrastructure.security.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+@Component
+@Slf4j
+public class TaskDispatcher {
+
+    private final TaskQueue taskQueue;
+    private final AgentOrchestrator orchestrator;
+    private final TenantContext tenantContext;
+    private final Executor taskExecutor;
+    private final Semaphore slots;
+
+    public TaskDispatcher(TaskQueue taskQueue,
+                          AgentOrchestrator orchestrator,
+                          TenantContext tenantContext,
+                          @Qualifier("taskExecutor") Executor taskExecutor,
+                          @Value("${agent.execution.max-concurrent-tasks:10}") int maxConcurrentTasks) {
+        this.taskQueue = taskQueue;
+        this.orchestrator = orchestrator;
+        this.tenantContext = tenantContext;
+        this.taskExecutor = taskExecutor;
+        this.slots = new Semaphore(maxConcurrentTasks);
+    }
+
+    @Scheduled(fixedDelayString = "${agent.queue.poll-interval:PT1S}")
+    public void dispatch() {
+        // Só reivindica o que este nó consegue executar agora
+        int available = slots.availablePermits();
+        if (available == 0) {
+            return;
+        }
+
+        List<Task> claimed;
+        try {
+            claimed = taskQueue.claimNext(available);
+        } catch (Exception e) {
+            log.error("Erro ao reivindicar tasks pendentes: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (Task task : claimed) {
+            slots.acquireUninterruptibly();
+            try {
+                taskExecutor.execute(() -> runClaimed(task));
+            } catch (RejectedExecutionException e) {
+                slots.release();
+                log.warn("Executor rejeitou a task {}, devolvendo para a fila", task.getId());
+                taskQueue.release(task);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.queue.recovery-interval:PT1M}")
+    public void recoverStale() {
+        try {
+            taskQueue.requeueStale();
+        } catch (Exception e) {
+            log.error("Erro ao recuperar tasks presas em RUNNING: {}", e.getMessage(), e);
+        }
+    }
+
+    private void runClaimed(Task task) {
+        tenantContext.setCurrentTenant(task.getTenant());
+        try {
+            orchestrator.run(task);
+        } catch (Exception e) {
+            log.error("Erro na execução da task {}: {}", task.getId(), e.getMessage(), e);
+        } finally {
+            tenantContext.clear();
+            slots.release();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.TaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Leases das tasks em execução neste nó: gravados na reivindicação e renovados por heartbeat.
+// Uma task só volta para a fila quando o lease vence, ou seja, quando o nó executor parou de renovar
+// (caiu ou travou), nunca por estar executando há muito tempo
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TaskLeases {
+
+    private final TaskRepository taskRepository;
+
+    // Identifica este processo; um nó reiniciado não renova os leases da instância anterior
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<UUID> held = ConcurrentHashMap.newKeySet();
+
+    @Value("${agent.queue.lease-duration:PT2M}")
+    private Duration leaseDuration;
+
+    // Participa da transação de quem chama (reivindicação na TaskQueue)
+    @Transactional
+    public void hold(Collection<UUID> taskIds) {
+        if (taskIds.isEmpty()) {
+            return;
+        }
+
+        held.addAll(taskIds);
+        taskRepository.acquireLeases(taskIds, nodeId, LocalDateTime.now().plus(leaseDuration));
+    }
+
+    @Transactional
+    public void hold(UUID taskId) {
+        hold(List.of(taskId));
+    }
+
+    public void release(UUID taskId) {
+        held.remove(taskId);
+    }
+
+    @Scheduled(fixedDelayString = "${agent.queue.heartbeat-interval:PT30S}")
+    @Transactional
+    public void heartbeat() {
+        if (held.isEmpty()) {
+            return;
+        }
+
+        List<UUID> taskIds = List.copyOf(held);
+        try {
+            int renewed = taskRepository.renewLeases(taskIds, nodeId, LocalDateTime.now().plus(leaseDuration));
+            if (renewed < taskIds.size()) {
+                // Concluídas entre a cópia e o UPDATE, ou lease perdido (heartbeat atrasado além da duração)
+                log.debug("Heartbeat renovou {} de {} leases de tasks", renewed, taskIds.size());
+            }
+        } catch (Exception e) {
+            log.error("Erro ao renovar leases de {} tasks: {}", taskIds.size(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.Task;
+import com.company.agent.domain.TaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TaskQueue {
+
+    private final TaskRepository taskRepository;
+    private final TaskLeases taskLeases;
+
+    @Value("${agent.queue.max-pending:1000}")
+    private long maxPending;
+
+    @Value("${agent.queue.retry-after:PT30S}")
+    private Duration retryAfter;
+
+    @Value("${agent.queue.stale-after:PT15M}")
+    private Duration staleAfter;
+
+    @Transactional(readOnly = true)
+    public void ensureCapacity() {
+        long pending = taskRepository.countByStatus(Task.Status.PENDING);
+
+        if (pending >= maxPending) {
+            log.warn("Fila saturada: {} tasks pendentes (limite {})", pending, maxPending);
+            throw new QueueSaturatedException(pending, retryAfter);
+        }
+    }
+
+    @Transactional
+    public List<Task> claimNext(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        // Bloqueio + marcação como RUNNING + lease na mesma transação: outros nós pulam as linhas bloqueadas
+        List<Task> claimed = taskRepository.lockNextPending(limit).stream()
+                .map(task -> {
+                    task.markRunning();
+                    return taskRepository.save(task);
+                })
+                .toList();
+        taskLeases.hold(claimed.stream().map(Task::getId).toList());
+        return claimed;
+    }
+
+    @Transactional
+    public Optional<Task> claim(UUID taskId) {
+        return taskRepository.lockPendingById(taskId)
+                .map(task -> {
+                    task.markRunning();
+                    Task saved = taskRepository.save(task);
+                    taskLeases.hold(saved.getId());
+                    return saved;
+                });
+    }
+
+    @Transactional
+    public void release(Task task) {
+        task.requeue();
+        taskRepository.save(task);
+        taskLeases.release(task.getId());
+        log.info("Task {} devolvida para a fila", task.getId());
+    }
+
+    // Só tasks cujo nó parou de renovar o lease; 'stale-after' vale apenas para RUNNING sem lease
+    // (gravadas antes do lease ou por um nó que caiu entre a marcação e o lease)
+    @Transactional
+    public int requeueStale() {
+        LocalDateTime now = LocalDateTime.now();
+        int requeued = taskRepository.requeueExpiredLeases(now, now.minus(staleAfter));
+
+        if (requeued > 0) {
+            log.warn("{} tasks em RUNNING com lease vencido devolvidas para a fila", requeued);
+        }
+
+        return requeued;
+    }
+}
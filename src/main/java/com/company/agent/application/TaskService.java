@@ -5,14 +5,13 @@ import com.company.agent.domain.TaskRepository;
 import com.company.agent.infrastructure.security.TenantContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -22,32 +21,40 @@ public class TaskService {
     private final TaskRepository taskRepository;
     private final AgentOrchestrator orchestrator;
     private final TenantContext tenantContext;
+    private final TaskQueue taskQueue;
 
     @Transactional
     public Task createTask(String prompt, Task.Mode mode, UUID flowId) {
-        String tenant = tenantContext.getCurrentTenant();
-
-        Task task = Task.builder()
-                .id(UUID.randomUUID())
-                .prompt(prompt)
-                .status(Task.Status.PENDING)
-                .mode(mode)
-                .tenant(tenant)
-                .flowId(flowId)
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
-
-        Task savedTask = taskRepository.save(task);
+        Task savedTask = taskRepository.save(newTask(prompt, mode, flowId));
 
         log.info("Task {} criada para tenant {} com modo {}",
-                savedTask.getId(), tenant, mode);
+                savedTask.getId(), savedTask.getTenant(), mode);
 
         return savedTask;
     }
 
-    @Transactional
+    // Sem @Transactional: cada etapa (reivindicação, execução, persistência) usa sua própria transação curta
     public Task executeTask(UUID taskId) {
+        return orchestrator.run(claimForExecution(taskId));
+    }
+
+    // Só para tasks ainda PENDING (criadas com sync=false e não reivindicadas pelo TaskDispatcher);
+    // para streaming de uma task nova use createAndStreamTask
+    public Flux<String> streamTask(UUID taskId) {
+        return orchestrator.stream(claimForExecution(taskId));
+    }
+
+    // Criada já como RUNNING e executada em streaming na mesma requisição: o TaskDispatcher nunca a vê
+    // como PENDING e o primeiro token chega sem esperar a fila
+    public StreamedTask createAndStreamTask(String prompt, Task.Mode mode, UUID flowId) {
+        Task claimed = saveRunning(newTask(prompt, mode, flowId));
+
+        log.info("Task {} criada para execução em streaming no tenant {}", claimed.getId(), claimed.getTenant());
+
+        return new StreamedTask(claimed, orchestrator.stream(claimed));
+    }
+
+    private Task claimForExecution(UUID taskId) {
         String tenant = tenantContext.getCurrentTenant();
 
         Task task = taskRepository.findById(taskId)
@@ -58,31 +65,23 @@ public class TaskService {
             throw new IllegalStateException("Task " + taskId + " não pode ser executada. Status atual: " + task.getStatus());
         }
 
-        return orchestrator.run(task);
-    }
-
-    @Async
-    @Transactional
-    public CompletableFuture<Task> executeTaskAsync(UUID taskId) {
-        try {
-            Task result = executeTask(taskId);
-            return CompletableFuture.completedFuture(result);
-        } catch (Exception e) {
-            log.error("Erro na execução assíncrona da task {}: {}", taskId, e.getMessage(), e);
-            return CompletableFuture.failedFuture(e);
-        }
+        // Bloquear e marcar RUNNING para que o TaskDispatcher não reivindique a mesma task
+        return taskQueue.claim(taskId)
+                .orElseThrow(() -> new IllegalStateException("Task " + taskId + " já está sendo executada"));
     }
 
-    @Transactional
     public Task createAndExecuteTask(String prompt, Task.Mode mode, UUID flowId, boolean sync) {
-        Task task = createTask(prompt, mode, flowId);
-
         if (sync) {
-            return executeTask(task.getId());
-        } else {
-            executeTaskAsync(task.getId());
-            return task;
+            Task claimed = saveRunning(newTask(prompt, mode, flowId));
+
+            log.info("Task {} criada para execução síncrona no tenant {}", claimed.getId(), claimed.getTenant());
+
+            return orchestrator.run(claimed);
         }
+
+        // Execução assíncrona: a task fica PENDING e é reivindicada pelo TaskDispatcher
+        taskQueue.ensureCapacity();
+        return createTask(prompt, mode, flowId);
     }
 
     @Transactional(readOnly = true)
@@ -119,6 +118,25 @@ public class TaskService {
                 .toList();
     }
 
+    // Criada já como RUNNING para que o TaskDispatcher nunca a veja como PENDING
+    private Task saveRunning(Task task) {
+        task.markRunning();
+        return taskRepository.save(task);
+    }
+
+    private Task newTask(String prompt, Task.Mode mode, UUID flowId) {
+        return Task.builder()
+                .id(UUID.randomUUID())
+                .prompt(prompt)
+                .status(Task.Status.PENDING)
+                .mode(mode)
+                .tenant(tenantContext.getCurrentTenant())
+                .flowId(flowId)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
     @Transactional
     public void cancelTask(UUID taskId) {
         String tenant = tenantContext.getCurrentTenant();
@@ -136,4 +154,6 @@ public class TaskService {
 
         log.info("Task {} cancelada pelo tenant {}", taskId, tenant);
     }
+
+    public record StreamedTask(Task task, Flux<String> tokens) {}
 }
@@ -0,0 +1,185 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.PhaseContext;
+import com.company.agent.infrastructure.security.TenantContextTaskDecorator;
+import com.company.agent.infrastructure.tools.DatabaseTool;
+import com.company.agent.infrastructure.tools.EmailTool;
+import com.company.agent.infrastructure.tools.FileTool;
+import com.company.agent.infrastructure.tools.HttpTool;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.core.ResolvableType;
+import org.springframework.stereotype.Component;
+
+import java.beans.Introspector;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+// Executa as chamadas de tool de um mesmo turno do modelo em paralelo (uma virtual thread por chamada),
+// com timeout por tool e limite de concorrência por task; as respostas voltam na ordem das chamadas
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ToolCallExecutor {
+
+    private final HttpTool httpTool;
+    private final EmailTool emailTool;
+    private final FileTool fileTool;
+    private final DatabaseTool databaseTool;
+    private final ToolPolicy toolPolicy;
+    private final TenantContextTaskDecorator tenantContextTaskDecorator;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Tools da fase (já filtradas pela política) e o semáforo compartilhado por todos os turnos da task
+    public Session open(PhaseContext phaseContext) {
+        Map<String, Function<?, ?>> tools = new HashMap<>();
+        for (Function<?, ?> tool : toolPolicy.resolveTools(List.of(httpTool, emailTool, fileTool, databaseTool), phaseContext)) {
+            // O modelo pode chamar pelo nome do bean ("httpTool") ou pelo nome da política ("http")
+            tools.put(Introspector.decapitalize(tool.getClass().getSimpleName()), tool);
+            tools.put(toolPolicy.getToolName(tool), tool);
+        }
+
+        ToolPolicy.ExecutionLimits limits = toolPolicy.executionLimits(phaseContext);
+        return new Session(tools, limits, new Semaphore(limits.maxConcurrentTools()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public class Session {
+
+        private final Map<String, Function<?, ?>> tools;
+        private final ToolPolicy.ExecutionLimits limits;
+        private final Semaphore permits;
+
+        private Session(Map<String, Function<?, ?>> tools, ToolPolicy.ExecutionLimits limits, Semaphore permits) {
+            this.tools = tools;
+            this.limits = limits;
+            this.permits = permits;
+        }
+
+        // Duração do turno = tool mais lenta (limitada pelo timeout), não a soma das tools
+        public List<ToolResponseMessage.ToolResponse> execute(List<AssistantMessage.ToolCall> toolCalls) {
+            List<CompletableFuture<ToolResponseMessage.ToolResponse>> pending = toolCalls.stream()
+                    .map(toolCall -> CompletableFuture.supplyAsync(
+                            () -> new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), executeWithLimits(toolCall)),
+                            runnable -> executor.execute(tenantContextTaskDecorator.decorate(runnable))))
+                    .toList();
+
+            if (toolCalls.size() > 1) {
+                log.debug("Executando {} chamadas de tool em paralelo (max {})", toolCalls.size(), limits.maxConcurrentTools());
+            }
+
+            // Junção na ordem original: o modelo associa as respostas pelo id, mas a ordem mantém o histórico estável
+            return pending.stream()
+                    .map(CompletableFuture::join)
+                    .toList();
+        }
+
+        private String executeWithLimits(AssistantMessage.ToolCall toolCall) {
+            Function<?, ?> tool = tools.get(toolCall.name());
+            if (tool == null) {
+                log.warn("Chamada para tool não permitida ou inexistente: {}", toolCall.name());
+                return error("Tool não permitida: " + toolCall.name());
+            }
+
+            String toolName = toolPolicy.getToolName(tool);
+            Duration timeout = limits.timeoutFor(toolName);
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return error("Execução interrompida");
+            }
+
+            // Tempo medido após obter a permissão: a espera pelo limite da task não conta no timeout da tool
+            long start = System.nanoTime();
+            FutureTask<String> invocation = new FutureTask<>(() -> invoke(tool, toolCall.arguments()));
+            String outcome = "success";
+
+            // A permissão é devolvida quando a invocação de fato termina, não quando o turno desiste dela:
+            // uma tool que ignora a interrupção após o timeout continua ocupando a vaga até retornar
+            Runnable guarded = () -> {
+                try {
+                    invocation.run();
+                } finally {
+                    permits.release();
+                }
+            };
+
+            try {
+                executor.execute(tenantContextTaskDecorator.decorate(guarded));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                log.warn("Executor de tools rejeitou a chamada para {}", toolName);
+                return error("Execução rejeitada");
+            }
+
+            try {
+                return invocation.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            } catch (TimeoutException e) {
+                outcome = "timeout";
+                invocation.cancel(true);
+                log.warn("Tool {} excedeu o timeout de {}", toolName, timeout);
+                return error("Timeout após " + timeout.toMillis() + " ms");
+
+            } catch (ExecutionException e) {
+                outcome = "error";
+                log.error("Erro na execução da tool {}: {}", toolName, e.getCause().getMessage(), e.getCause());
+                return error("Erro na execução: " + e.getCause().getMessage());
+
+            } catch (InterruptedException e) {
+                outcome = "error";
+                invocation.cancel(true);
+                Thread.currentThread().interrupt();
+                return error("Execução interrompida");
+
+            } finally {
+                meterRegistry.timer("agent.tool.latency", "tool", toolName, "outcome", outcome)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private String invoke(Function<?, ?> tool, String arguments) throws JsonProcessingException {
+        Class<?> inputType = ResolvableType.forClass(tool.getClass()).as(Function.class).resolveGeneric(0);
+        Object input = objectMapper.readValue(arguments, inputType);
+        Object output = ((Function<Object, Object>) tool).apply(input);
+        return objectMapper.writeValueAsString(output);
+    }
+
+    // Mesmo formato (success/message) das respostas das tools, para o modelo poder reagir à falha
+    private String error(String message) {
+        try {
+            return objectMapper.writeValueAsString(Map.of("success", false, "message", message));
+        } catch (JsonProcessingException e) {
+            return "{\"success\":false}";
+        }
+    }
+}
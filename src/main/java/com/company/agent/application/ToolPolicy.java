@@ -1,90 +1,195 @@
 package com.company.agent.application;
 
 import com.company.agent.domain.PhaseContext;
+import com.company.agent.infrastructure.tools.DatabaseTool;
+import com.company.agent.infrastructure.tools.DomainMatcher;
 import com.company.agent.infrastructure.tools.HttpTool;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ToolPolicy {
 
+    // Chaves da política para a execução paralela de tools (ver ToolCallExecutor)
+    static final String MAX_CONCURRENT_KEY = "maxConcurrentTools";
+    static final String TIMEOUT_KEY = "toolTimeout";
+    static final String TIMEOUTS_KEY = "toolTimeouts";
+
+    // TTL do cache HTTP por host, sobrepondo Cache-Control (ex.: {"api.github.com": "PT5M"})
+    static final String HTTP_CACHE_TTL_KEY = "httpCacheTtl";
+
+    // Datasource da DatabaseTool (ver ToolDataSources): "default" ou "firebird"
+    static final String DATASOURCE_KEY = "datasource";
+
+    // Nome da tool derivado da classe uma única vez ("HttpTool" -> "http")
+    private static final ClassValue<String> TOOL_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String className = type.getSimpleName();
+
+            if (className.endsWith("Tool")) {
+                return className.substring(0, className.length() - 4).toLowerCase();
+            }
+
+            return className.toLowerCase();
+        }
+    };
+
+    private final int defaultMaxConcurrent;
+    private final Duration defaultTimeout;
+    private final CompiledPolicy defaultPolicy;
+
+    // Política compilada por versão do contexto (id + updatedAt): upsert gera nova chave e a antiga expira
+    private final Cache<PolicyKey, CompiledPolicy> compiledPolicies;
+
+    public ToolPolicy(MeterRegistry meterRegistry,
+                      @Value("${agent.tools.max-concurrent:4}") int defaultMaxConcurrent,
+                      @Value("${agent.tools.timeout:PT30S}") Duration defaultTimeout,
+                      @Value("${agent.cache.tool-policy.max-size:10000}") long maxSize,
+                      @Value("${agent.cache.tool-policy.ttl:PT1H}") Duration ttl) {
+        this.defaultMaxConcurrent = defaultMaxConcurrent;
+        this.defaultTimeout = defaultTimeout;
+        this.defaultPolicy = compile(Map.of());
+        this.compiledPolicies = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, compiledPolicies, "toolPolicy");
+    }
+
     public ChatClient applyPolicy(ChatClient baseChatClient, PhaseContext phaseContext) {
         if (phaseContext == null || !phaseContext.hasToolPolicy()) {
             log.debug("Nenhuma política de tools definida, usando configuração padrão");
             return baseChatClient;
         }
 
-        Map<String, Object> policy = phaseContext.getToolPolicy();
+        CompiledPolicy policy = compiled(phaseContext);
 
         return baseChatClient.mutate()
-                .tools(tools -> filterTools(tools, policy))
+                .tools(policy::filterTools)
                 .build();
     }
 
-    private List<Function<?, ?>> filterTools(List<Function<?, ?>> originalTools, Map<String, Object> policy) {
-        Set<String> allowedTools = extractStringSet(policy, "allow");
-        Set<String> deniedTools = extractStringSet(policy, "deny");
-        Set<String> allowedDomains = extractStringSet(policy, "allowDomains");
+    // Mesma filtragem do applyPolicy, para quem executa as tools fora do ChatClient
+    public List<Function<?, ?>> resolveTools(List<Function<?, ?>> tools, PhaseContext phaseContext) {
+        if (phaseContext == null || !phaseContext.hasToolPolicy()) {
+            return tools;
+        }
 
-        log.debug("Aplicando política: allow={}, deny={}, domains={}",
-                allowedTools, deniedTools, allowedDomains);
+        return compiled(phaseContext).filterTools(tools);
+    }
 
-        return originalTools.stream()
-                .filter(tool -> isToolAllowed(tool, allowedTools, deniedTools))
-                .map(tool -> configureToolDomains(tool, allowedDomains))
-                .toList();
+    // Limite de tools simultâneas por task e timeouts (padrão e por tool, em ms ou ISO-8601)
+    public ExecutionLimits executionLimits(PhaseContext phaseContext) {
+        return compiled(phaseContext).limits();
     }
 
-    private boolean isToolAllowed(Function<?, ?> tool, Set<String> allowedTools, Set<String> deniedTools) {
-        String toolName = getToolName(tool);
+    String getToolName(Function<?, ?> tool) {
+        return TOOL_NAMES.get(tool.getClass());
+    }
 
-        // Se há lista de permitidos, só permite os listados
-        if (!allowedTools.isEmpty() && !allowedTools.contains(toolName)) {
-            log.debug("Tool {} não está na lista de permitidos", toolName);
-            return false;
+    private CompiledPolicy compiled(PhaseContext phaseContext) {
+        if (phaseContext == null || !phaseContext.hasToolPolicy()) {
+            return defaultPolicy;
         }
 
-        // Se está na lista de negados, não permite
-        if (deniedTools.contains(toolName)) {
-            log.debug("Tool {} está na lista de negados", toolName);
-            return false;
+        // Contexto ainda não persistido (sem id): compilado sem cache
+        if (phaseContext.getId() == null) {
+            return compile(phaseContext.getToolPolicy());
         }
 
-        return true;
+        return compiledPolicies.get(new PolicyKey(phaseContext.getId(), phaseContext.getUpdatedAt()),
+                key -> compile(phaseContext.getToolPolicy()));
     }
 
-    private Function<?, ?> configureToolDomains(Function<?, ?> tool, Set<String> allowedDomains) {
-        if (allowedDomains.isEmpty()) {
-            return tool;
+    private CompiledPolicy compile(Map<String, Object> policy) {
+        Set<String> allowedTools = extractStringSet(policy, "allow");
+        Set<String> deniedTools = extractStringSet(policy, "deny");
+        Set<String> allowedDomains = extractStringSet(policy, "allowDomains");
+
+        DomainMatcher domainMatcher = null;
+        if (!allowedDomains.isEmpty()) {
+            try {
+                domainMatcher = DomainMatcher.compile(allowedDomains);
+            } catch (IllegalArgumentException e) {
+                // Padrão inválido: nenhum domínio liberado (falha fechada), em vez de manter a allowlist padrão
+                log.warn("Política com allowDomains inválido ({}): {}", e.getMessage(), allowedDomains);
+                domainMatcher = DomainMatcher.compile(List.of());
+            }
         }
 
-        // Para HttpTool, configurar domínios permitidos
-        if (tool instanceof HttpTool httpTool) {
-            return httpTool.withAllowedDomains(allowedDomains);
+        log.debug("Compilando política: allow={}, deny={}, domains={}",
+                allowedTools, deniedTools, allowedDomains);
+
+        Object dataSource = policy.get(DATASOURCE_KEY);
+
+        return new CompiledPolicy(allowedTools, deniedTools, domainMatcher,
+                Map.copyOf(extractDurationMap(policy, HTTP_CACHE_TTL_KEY)),
+                dataSource != null ? dataSource.toString() : null,
+                executionLimits(policy));
+    }
+
+    private ExecutionLimits executionLimits(Map<String, Object> policy) {
+        int maxConcurrent = defaultMaxConcurrent;
+        Object configured = policy.get(MAX_CONCURRENT_KEY);
+        if (configured != null) {
+            try {
+                maxConcurrent = Integer.parseInt(configured.toString());
+            } catch (NumberFormatException e) {
+                log.warn("Valor inválido para chave '{}' na política: {}", MAX_CONCURRENT_KEY, configured);
+            }
         }
 
-        return tool;
+        Duration timeout = Optional.ofNullable(parseDuration(TIMEOUT_KEY, policy.get(TIMEOUT_KEY)))
+                .orElse(defaultTimeout);
+
+        return new ExecutionLimits(Math.max(1, maxConcurrent), timeout, Map.copyOf(extractDurationMap(policy, TIMEOUTS_KEY)));
     }
 
-    private String getToolName(Function<?, ?> tool) {
-        // Extrair nome da tool baseado na classe ou annotation
-        String className = tool.getClass().getSimpleName();
+    // Mapa nome -> duração (ms ou ISO-8601); entradas inválidas são ignoradas com aviso
+    private Map<String, Duration> extractDurationMap(Map<String, Object> policy, String key) {
+        Map<String, Duration> durations = new HashMap<>();
+        if (policy.get(key) instanceof Map<?, ?> entries) {
+            entries.forEach((name, value) -> {
+                Duration parsed = parseDuration(key, value);
+                if (name != null && parsed != null) {
+                    durations.put(name.toString(), parsed);
+                }
+            });
+        }
+        return durations;
+    }
 
-        if (className.endsWith("Tool")) {
-            return className.substring(0, className.length() - 4).toLowerCase();
+    private Duration parseDuration(String key, Object value) {
+        if (value == null) {
+            return null;
         }
 
-        return className.toLowerCase();
+        try {
+            return value instanceof Number millis
+                    ? Duration.ofMillis(millis.longValue())
+                    : Duration.parse(value.toString());
+        } catch (RuntimeException e) {
+            log.warn("Valor inválido para chave '{}' na política: {}", key, value);
+            return null;
+        }
     }
 
-    @SuppressWarnings("unchecked")
     private Set<String> extractStringSet(Map<String, Object> policy, String key) {
         Object value = policy.get(key);
 
@@ -93,7 +198,7 @@ public class ToolPolicy {
         }
 
         if (value instanceof List<?> list) {
-            return new HashSet<>(
+            return Set.copyOf(
                     list.stream()
                             .filter(Objects::nonNull)
                             .map(Object::toString)
@@ -108,4 +213,86 @@ public class ToolPolicy {
         log.warn("Valor inválido para chave '{}' na política: {}", key, value);
         return Set.of();
     }
+
+    private record PolicyKey(UUID phaseContextId, LocalDateTime updatedAt) {}
+
+    // Política imutável de uma versão do contexto; as tools configuradas (ex.: HttpTool com a allowlist
+    // da fase) são criadas uma vez por tool original e reaproveitadas por todas as tasks da fase
+    private final class CompiledPolicy {
+
+        private final Set<String> allowedTools;
+        private final Set<String> deniedTools;
+        private final DomainMatcher domainMatcher;
+        private final Map<String, Duration> httpCacheTtls;
+        private final String dataSource;
+        private final ExecutionLimits limits;
+        private final Map<Function<?, ?>, Function<?, ?>> configuredTools = new ConcurrentHashMap<>();
+
+        private CompiledPolicy(Set<String> allowedTools, Set<String> deniedTools, DomainMatcher domainMatcher,
+                               Map<String, Duration> httpCacheTtls, String dataSource, ExecutionLimits limits) {
+            this.allowedTools = allowedTools;
+            this.deniedTools = deniedTools;
+            this.domainMatcher = domainMatcher;
+            this.httpCacheTtls = httpCacheTtls;
+            this.dataSource = dataSource;
+            this.limits = limits;
+        }
+
+        ExecutionLimits limits() {
+            return limits;
+        }
+
+        List<Function<?, ?>> filterTools(List<Function<?, ?>> originalTools) {
+            return originalTools.stream()
+                    .filter(this::isToolAllowed)
+                    .map(tool -> configuredTools.computeIfAbsent(tool, this::configure))
+                    .toList();
+        }
+
+        private boolean isToolAllowed(Function<?, ?> tool) {
+            String toolName = getToolName(tool);
+
+            // Se há lista de permitidos, só permite os listados
+            if (!allowedTools.isEmpty() && !allowedTools.contains(toolName)) {
+                log.debug("Tool {} não está na lista de permitidos", toolName);
+                return false;
+            }
+
+            // Se está na lista de negados, não permite
+            if (deniedTools.contains(toolName)) {
+                log.debug("Tool {} está na lista de negados", toolName);
+                return false;
+            }
+
+            return true;
+        }
+
+        private Function<?, ?> configure(Function<?, ?> tool) {
+            // Para DatabaseTool, o datasource da fase
+            if (tool instanceof DatabaseTool databaseTool) {
+                return dataSource != null ? databaseTool.withDataSource(dataSource) : tool;
+            }
+
+            // Para HttpTool, configurar domínios permitidos e TTLs do cache
+            if (!(tool instanceof HttpTool httpTool)) {
+                return tool;
+            }
+
+            HttpTool configured = httpTool;
+            if (domainMatcher != null) {
+                configured = configured.withAllowedDomains(domainMatcher);
+            }
+            if (!httpCacheTtls.isEmpty()) {
+                configured = configured.withCacheTtls(httpCacheTtls);
+            }
+            return configured;
+        }
+    }
+
+    public record ExecutionLimits(int maxConcurrentTools, Duration defaultTimeout, Map<String, Duration> timeouts) {
+
+        public Duration timeoutFor(String toolName) {
+            return timeouts.getOrDefault(toolName, defaultTimeout);
+        }
+    }
 }
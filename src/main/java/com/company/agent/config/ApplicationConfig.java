@@ -1,31 +1,100 @@
 package com.company.agent.config;
 
+import com.company.agent.infrastructure.security.TenantContextTaskDecorator;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
+@Slf4j
 public class ApplicationConfig {
 
+    // Pool do Reactor Netty é por host remoto: max-connections-per-host limita cada upstream isoladamente
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider httpConnectionProvider(
+            @Value("${agent.http.max-connections-per-host:50}") int maxConnections,
+            @Value("${agent.http.pending-acquire-timeout:PT5S}") Duration pendingAcquireTimeout,
+            @Value("${agent.http.max-idle-time:PT30S}") Duration maxIdleTime,
+            @Value("${agent.http.max-life-time:PT5M}") Duration maxLifeTime) {
+        return ConnectionProvider.builder("agent-http")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(maxIdleTime)
+                .metrics(true)
+                .build();
+    }
+
     @Bean
-    public WebClient webClient() {
+    public WebClient webClient(ConnectionProvider httpConnectionProvider,
+                               @Value("${agent.http.connect-timeout:PT5S}") Duration connectTimeout,
+                               @Value("${agent.http.read-timeout:PT30S}") Duration readTimeout) {
+        HttpClient httpClient = HttpClient.create(httpConnectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                // Tempo até o início da resposta; read/write timeout cobrem upstreams que param no meio do corpo
+                .responseTimeout(readTimeout)
+                .doOnConnected(connection -> connection
+                        .addHandlerLast(new ReadTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                        .addHandlerLast(new WriteTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS)));
+
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024)) // 1MB
                 .build();
     }
 
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
+    public Executor taskExecutor(TenantContextTaskDecorator tenantContextTaskDecorator,
+                                 @Value("${agent.execution.max-concurrent-tasks:10}") int maxConcurrentTasks,
+                                 @Value("${agent.execution.virtual-threads:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            // Uma virtual thread por task; o limite de concorrência fica com o semáforo do TaskDispatcher
+            log.info("Executor de tasks em modo virtual threads (max-concurrent-tasks={})", maxConcurrentTasks);
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("AgentTask-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(tenantContextTaskDecorator);
+            return executor;
+        }
+
+        // O TaskDispatcher limita as submissões a max-concurrent-tasks, então a fila interna nunca enche
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(100);
+        executor.setCorePoolSize(maxConcurrentTasks);
+        executor.setMaxPoolSize(maxConcurrentTasks);
+        executor.setQueueCapacity(maxConcurrentTasks);
         executor.setThreadNamePrefix("AgentTask-");
+        executor.setTaskDecorator(tenantContextTaskDecorator);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "ingestionExecutor")
+    public Executor ingestionExecutor(@Value("${agent.ingestion.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        executor.setQueueCapacity(Integer.MAX_VALUE); // Jobs são persistidos; a fila só ordena a execução
+        executor.setThreadNamePrefix("Ingestion-");
         executor.initialize();
         return executor;
     }
@@ -1,16 +1,30 @@
 package com.company.agent.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @Configuration
-@EnableJpaRepositories(basePackages = "com.company.agent.infrastructure.persistence")
+// As interfaces Spring Data ficam aninhadas nos adaptadores Jpa*Repository
+@EnableJpaRepositories(basePackages = "com.company.agent.infrastructure.persistence", considerNestedRepositories = true)
 @EnableTransactionManagement
 public class DatabaseConfig {
 
+    // Declarado explicitamente: com o firebirdDataSource presente o auto-config do Boot recuaria
+    // (@ConditionalOnMissingBean) e JPA/Flyway acabariam no Firebird
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -29,6 +29,8 @@ public class FirebirdDataSourceConfig {
         config.setUsername(firebirdUsername);
         config.setPassword(firebirdPassword);
         config.setDriverClassName("org.firebirdsql.jdbc.FBDriver");
+        // Usado apenas pela DatabaseTool (ver ToolDataSources)
+        config.setPoolName("agent-tool-firebird");
 
         // Configurações de pool otimizadas para Firebird
         config.setMaximumPoolSize(10);
@@ -0,0 +1,67 @@
+package com.company.agent.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailMessage {
+
+    public enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        FAILED
+    }
+
+    private UUID id;
+    private String tenant;
+    private String idempotencyKey;  // Informada pelo modelo ou hash do conteúdo
+    private List<String> to;
+    private List<String> cc;
+    private List<String> bcc;
+    private String subject;
+    private String body;
+    private Status status;
+    private int attempts;
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime sentAt;
+
+    // Business methods
+    public void markSending() {
+        this.status = Status.SENDING;
+        this.attempts++;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public void markSent() {
+        this.status = Status.SENT;
+        this.lastError = null;
+        this.sentAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public void scheduleRetry(String error, LocalDateTime nextAttemptAt) {
+        this.status = Status.PENDING;
+        this.lastError = error;
+        this.nextAttemptAt = nextAttemptAt;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public void markFailed(String error) {
+        this.status = Status.FAILED;
+        this.lastError = error;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,19 @@
+package com.company.agent.domain;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EmailMessageRepository {
+
+    // Insere PENDING; false se o tenant já tem mensagem com a mesma chave de idempotência
+    boolean enqueue(EmailMessage message);
+
+    EmailMessage save(EmailMessage message);
+
+    // Bloqueia até 'limit' mensagens PENDING já devidas, ignorando as bloqueadas por outros nós (FOR UPDATE SKIP LOCKED)
+    List<EmailMessage> lockNextDue(int limit);
+
+    int requeueSendingUpdatedBefore(LocalDateTime cutoff);
+
+    int deleteFinishedUpdatedBefore(LocalDateTime cutoff);
+}
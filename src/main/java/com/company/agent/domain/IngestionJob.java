@@ -0,0 +1,82 @@
+package com.company.agent.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private UUID id;
+    private String tenant;
+    private String phase;           // Metadado 'phase' gravado nos chunks
+    private String sourceId;        // Identificador da fonte (padrão: nome do arquivo)
+    private String fileName;
+    private String contentType;
+    private String spoolPath;       // Cópia local do upload, mantida até a conclusão
+    private Status status;
+    private Integer totalUnits;     // Páginas (PDF) ou blocos de texto; null enquanto desconhecido
+    private int processedUnits;     // Unidades já gravadas: ponto de retomada
+    private long chunksWritten;     // Chunks novos/alterados, embedados nesta ingestão
+    private long chunksUnchanged;   // Chunks já presentes na fonte (mesmo content_hash)
+    private long chunksDeleted;     // Chunks órfãos removidos ao concluir
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+
+    // Business methods
+    public void markRunning() {
+        this.status = Status.RUNNING;
+        this.errorMessage = null;
+        if (this.startedAt == null) {
+            this.startedAt = LocalDateTime.now();
+        }
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public void recordProgress(int processedUnits, int written, int unchanged) {
+        this.processedUnits = processedUnits;
+        this.chunksWritten += written;
+        this.chunksUnchanged += unchanged;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public void markCompleted(int deletedOrphans) {
+        this.status = Status.COMPLETED;
+        this.chunksDeleted = deletedOrphans;
+        this.totalUnits = this.processedUnits;
+        this.completedAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public void markFailed(String errorMessage) {
+        this.status = Status.FAILED;
+        this.errorMessage = errorMessage;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public boolean isPdf() {
+        return "application/pdf".equalsIgnoreCase(contentType) ||
+                (fileName != null && fileName.toLowerCase().endsWith(".pdf"));
+    }
+
+    public boolean canBeResumed() {
+        return status != Status.COMPLETED;
+    }
+}
@@ -0,0 +1,18 @@
+package com.company.agent.domain;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IngestionJobRepository {
+
+    IngestionJob save(IngestionJob job);
+
+    Optional<IngestionJob> findById(UUID id);
+
+    List<IngestionJob> findByTenant(String tenant);
+
+    List<IngestionJob> findByStatusIn(List<IngestionJob.Status> statuses);
+
+    boolean existsBySource(String tenant, String sourceId, List<IngestionJob.Status> statuses);
+}
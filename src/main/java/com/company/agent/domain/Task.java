@@ -40,6 +40,9 @@ public class Task {
     private LocalDateTime updatedAt;
     private LocalDateTime startedAt;
     private LocalDateTime completedAt;
+    private Integer promptTokens;      // Tokens de entrada montados (system + contexto RAG + usuário)
+    private Integer contextTokens;     // Parte de promptTokens ocupada pelos chunks do RAG
+    private Integer completionTokens;  // Tokens da resposta
 
     // Business methods
     public void markRunning() {
@@ -62,6 +65,21 @@ public class Task {
         this.updatedAt = LocalDateTime.now();
     }
 
+    public void recordPromptTokens(int promptTokens, int contextTokens) {
+        this.promptTokens = promptTokens;
+        this.contextTokens = contextTokens;
+    }
+
+    public void recordCompletionTokens(int completionTokens) {
+        this.completionTokens = completionTokens;
+    }
+
+    public void requeue() {
+        this.status = Status.PENDING;
+        this.startedAt = null;
+        this.updatedAt = LocalDateTime.now();
+    }
+
     public void cancel() {
         this.status = Status.CANCELLED;
         this.completedAt = LocalDateTime.now();
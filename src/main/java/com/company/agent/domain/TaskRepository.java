@@ -1,5 +1,7 @@
 package com.company.agent.domain;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -16,6 +18,21 @@ public interface TaskRepository {
 
     List<Task> findByFlowId(UUID flowId);
 
+    // Bloqueia até 'limit' tasks PENDING ignorando as já bloqueadas por outros nós (FOR UPDATE SKIP LOCKED)
+    List<Task> lockNextPending(int limit);
+
+    Optional<Task> lockPendingById(UUID id);
+
+    long countByStatus(Task.Status status);
+
+    // Lease do nó executor: gravado na reivindicação e renovado pelo heartbeat (só enquanto RUNNING e do mesmo nó)
+    int acquireLeases(Collection<UUID> ids, String owner, LocalDateTime expiresAt);
+
+    int renewLeases(Collection<UUID> ids, String owner, LocalDateTime expiresAt);
+
+    // RUNNING com lease vencido, ou sem lease (anteriores ao lease) iniciadas antes de 'unleasedCutoff'
+    int requeueExpiredLeases(LocalDateTime now, LocalDateTime unleasedCutoff);
+
     void deleteById(UUID id);
 
     boolean existsById(UUID id);
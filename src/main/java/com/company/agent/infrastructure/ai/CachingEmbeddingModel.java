@@ -0,0 +1,299 @@
+package com.company.agent.infrastructure.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Decorator de EmbeddingModel: cache em memória (off-heap), camada Postgres opcional
+// e agrupamento de chamadas concorrentes em um único request à API
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final PersistentEmbeddingCache persistentTier;
+    private final MeterRegistry meterRegistry;
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+
+    // Os floats ficam em ByteBuffers diretos: o heap guarda apenas as referências
+    private final Cache<String, ByteBuffer> memoryTier;
+
+    private final ReentrantLock batchLock = new ReentrantLock();
+    private final Map<String, CompletableFuture<float[]>> inFlight = new HashMap<>();
+    private Map<String, String> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService batchScheduler;
+    private final ExecutorService batchExecutor;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate,
+                                 String modelName,
+                                 long maxMemoryBytes,
+                                 PersistentEmbeddingCache persistentTier,
+                                 Duration batchWindow,
+                                 int maxBatchSize,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.persistentTier = persistentTier;
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.meterRegistry = meterRegistry;
+
+        this.memoryTier = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryBytes)
+                .weigher((String key, ByteBuffer value) -> value.capacity())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memoryTier, "embedding");
+
+        this.batchScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("embedding-batcher").daemon(true).factory());
+        this.batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> inputs = request.getInstructions();
+        float[][] results = new float[inputs.size()][];
+        Map<String, String> misses = new LinkedHashMap<>();
+        String[] keys = new String[inputs.size()];
+
+        for (int i = 0; i < inputs.size(); i++) {
+            keys[i] = cacheKey(inputs.get(i));
+            results[i] = fromMemory(keys[i]);
+            if (results[i] == null) {
+                misses.put(keys[i], inputs.get(i));
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<String, float[]> loaded = loadMisses(misses, request.getOptions());
+            for (int i = 0; i < inputs.size(); i++) {
+                if (results[i] == null) {
+                    results[i] = loaded.get(keys[i]);
+                }
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(inputs.size());
+        for (int i = 0; i < results.length; i++) {
+            embeddings.add(new Embedding(results[i], i));
+        }
+
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        String key = cacheKey(text);
+
+        float[] cached = fromMemory(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (batchWindow.isZero()) {
+            return loadMisses(Map.of(key, text), defaultOptions()).get(key);
+        }
+
+        try {
+            return enqueue(key, text).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    @Override
+    public void close() {
+        batchScheduler.shutdownNow();
+        batchExecutor.shutdownNow();
+    }
+
+    private Map<String, float[]> loadMisses(Map<String, String> textsByKey, EmbeddingOptions options) {
+        Map<String, float[]> found = new HashMap<>();
+
+        if (persistentTier != null) {
+            persistentTier.findAll(textsByKey.keySet()).forEach((key, embedding) -> {
+                found.put(key, embedding);
+                toMemory(key, embedding);
+            });
+            countRequests("persistent", found.size());
+        }
+
+        List<String> remainingKeys = textsByKey.keySet().stream()
+                .filter(key -> !found.containsKey(key))
+                .toList();
+
+        if (!remainingKeys.isEmpty()) {
+            List<String> texts = remainingKeys.stream().map(textsByKey::get).toList();
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(texts, options));
+
+            Map<String, float[]> fresh = new HashMap<>();
+            for (Embedding embedding : response.getResults()) {
+                fresh.put(remainingKeys.get(embedding.getIndex()), embedding.getOutput());
+            }
+
+            fresh.forEach(this::toMemory);
+            if (persistentTier != null) {
+                persistentTier.saveAll(fresh);
+            }
+
+            found.putAll(fresh);
+            countRequests("model", remainingKeys.size());
+        }
+
+        return found;
+    }
+
+    private CompletableFuture<float[]> enqueue(String key, String text) {
+        batchLock.lock();
+        try {
+            // Requisições idênticas em andamento compartilham o mesmo resultado
+            CompletableFuture<float[]> existing = inFlight.get(key);
+            if (existing != null) {
+                return existing;
+            }
+
+            CompletableFuture<float[]> future = new CompletableFuture<>();
+            inFlight.put(key, future);
+            pending.put(key, text);
+
+            if (pending.size() >= maxBatchSize) {
+                batchExecutor.execute(this::flush);
+            } else if (pending.size() == 1) {
+                batchScheduler.schedule(() -> batchExecutor.execute(this::flush),
+                        batchWindow.toNanos(), TimeUnit.NANOSECONDS);
+            }
+
+            return future;
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    private void flush() {
+        Map<String, String> batch;
+
+        batchLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        } finally {
+            batchLock.unlock();
+        }
+
+        meterRegistry.summary("agent.embedding.batch.size").record(batch.size());
+
+        Map<String, float[]> loaded = null;
+        RuntimeException failure = null;
+        try {
+            loaded = loadMisses(batch, defaultOptions());
+        } catch (RuntimeException e) {
+            log.warn("Erro ao gerar lote de {} embeddings: {}", batch.size(), e.getMessage());
+            failure = e;
+        }
+
+        batchLock.lock();
+        try {
+            for (String key : batch.keySet()) {
+                CompletableFuture<float[]> future = inFlight.remove(key);
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else if (loaded.containsKey(key)) {
+                    future.complete(loaded.get(key));
+                } else {
+                    future.completeExceptionally(new IllegalStateException("Embedding não retornado pelo modelo"));
+                }
+            }
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    private float[] fromMemory(String key) {
+        ByteBuffer buffer = memoryTier.getIfPresent(key);
+        if (buffer == null) {
+            return null;
+        }
+
+        // asFloatBuffer() cria uma view com posição própria: leitura segura entre threads
+        float[] embedding = new float[buffer.capacity() / Float.BYTES];
+        buffer.asFloatBuffer().get(embedding);
+        countRequests("memory", 1);
+        return embedding;
+    }
+
+    private void toMemory(String key, float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(embedding.length * Float.BYTES)
+                .order(ByteOrder.nativeOrder());
+        buffer.asFloatBuffer().put(embedding);
+        memoryTier.put(key, buffer);
+    }
+
+    private void countRequests(String tier, int count) {
+        if (count > 0) {
+            meterRegistry.counter("agent.embedding_cache.requests", "tier", tier).increment(count);
+        }
+    }
+
+    private String cacheKey(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private EmbeddingOptions defaultOptions() {
+        return EmbeddingOptionsBuilder.builder().build();
+    }
+}
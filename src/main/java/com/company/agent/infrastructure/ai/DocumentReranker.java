@@ -0,0 +1,18 @@
+package com.company.agent.infrastructure.ai;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.util.List;
+
+// Estágio pós-recuperação: reduz os candidatos aos topK que vão para o prompt. Implementações
+// são beans (o nome do bean é o valor de 'ragRerank' na fase), ex.: "mmr" ou um cross-encoder local
+public interface DocumentReranker {
+
+    List<Document> rerank(Query query, List<Document> candidates, int topK);
+
+    // true: a busca vetorial devolve o embedding dos candidatos em PgVectorSearch.EMBEDDING_METADATA
+    default boolean usesEmbeddings() {
+        return false;
+    }
+}
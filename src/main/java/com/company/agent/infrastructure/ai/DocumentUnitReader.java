@@ -0,0 +1,128 @@
+package com.company.agent.infrastructure.ai;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Lê um documento em unidades (páginas de PDF ou blocos de texto) sem carregá-lo inteiro em memória
+public interface DocumentUnitReader extends AutoCloseable {
+
+    // Total de unidades, quando conhecido antecipadamente (null para texto)
+    Integer totalUnits();
+
+    // Próxima unidade ou null ao final
+    String next() throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    static DocumentUnitReader open(Path path, boolean pdf, int textUnitChars) throws IOException {
+        return pdf ? new PdfPageReader(path) : new TextBlockReader(path, textUnitChars);
+    }
+
+    default void skip(int units) throws IOException {
+        for (int i = 0; i < units && next() != null; i++) {
+            // Avança até o ponto de retomada
+        }
+    }
+
+    final class PdfPageReader implements DocumentUnitReader {
+
+        private final PDDocument document;
+        private final PDFTextStripper stripper;
+        private int nextPage = 1;
+
+        PdfPageReader(Path path) throws IOException {
+            // O PDFBox lê o arquivo sob demanda, sem copiá-lo inteiro para o heap
+            this.document = Loader.loadPDF(path.toFile());
+            this.stripper = new PDFTextStripper();
+        }
+
+        @Override
+        public Integer totalUnits() {
+            return document.getNumberOfPages();
+        }
+
+        @Override
+        public String next() throws IOException {
+            if (nextPage > document.getNumberOfPages()) {
+                return null;
+            }
+            stripper.setStartPage(nextPage);
+            stripper.setEndPage(nextPage);
+            nextPage++;
+            return stripper.getText(document);
+        }
+
+        @Override
+        public void skip(int units) {
+            // Páginas são endereçáveis: não é preciso extrair o texto das já processadas
+            nextPage += units;
+        }
+
+        @Override
+        public void close() throws IOException {
+            document.close();
+        }
+    }
+
+    // Blocos de texto com fronteiras definidas pelo conteúdo (content-defined chunking por linha): um bloco
+    // termina após uma linha cujo hash cai no divisor, respeitando tamanho mínimo e máximo. Inserir ou remover
+    // texto só muda o bloco editado (e no máximo o seguinte); os demais, e portanto seus chunks e ids, se mantêm
+    final class TextBlockReader implements DocumentUnitReader {
+
+        // Comprimento médio de linha presumido para o divisor (blocos de ~unitChars em média)
+        private static final int TYPICAL_LINE_CHARS = 64;
+
+        private final BufferedReader reader;
+        private final int minChars;
+        private final int maxChars;
+        private final int divisor;
+
+        TextBlockReader(Path path, int unitChars) throws IOException {
+            this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+            this.minChars = unitChars / 2;
+            this.maxChars = unitChars * 2;
+            this.divisor = Math.max(1, (unitChars - minChars) / TYPICAL_LINE_CHARS);
+        }
+
+        @Override
+        public Integer totalUnits() {
+            return null;
+        }
+
+        @Override
+        public String next() throws IOException {
+            StringBuilder block = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                block.append(line).append('\n');
+                if (block.length() >= maxChars || (block.length() >= minChars && isBoundary(line))) {
+                    break;
+                }
+            }
+            return block.isEmpty() ? null : block.toString();
+        }
+
+        // Depende só do conteúdo da linha (String.hashCode é especificado): a mesma linha é fronteira
+        // em qualquer versão do documento; linhas em branco nunca são (seriam todas iguais)
+        private boolean isBoundary(String line) {
+            if (line.isBlank()) {
+                return false;
+            }
+            int hash = line.hashCode() * 0x9E3779B1;
+            return Math.floorMod(hash ^ (hash >>> 16), divisor) == 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.company.agent.infrastructure.ai;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+public class EmbeddingCacheConfig {
+
+    // EmbeddingModel principal: todos os consumidores (VectorStore, cache semântico) passam pelo cache
+    @Bean
+    @Primary
+    public EmbeddingModel cachingEmbeddingModel(
+            OpenAiEmbeddingModel openAiEmbeddingModel,
+            NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${spring.ai.openai.embedding.model:text-embedding-3-small}") String modelName,
+            @Value("${agent.embedding-cache.max-memory:64MB}") DataSize maxMemory,
+            @Value("${agent.embedding-cache.persistent:false}") boolean persistent,
+            @Value("${agent.embedding-cache.batch-window:10ms}") Duration batchWindow,
+            @Value("${agent.embedding-cache.max-batch-size:64}") int maxBatchSize) {
+
+        PersistentEmbeddingCache persistentTier = persistent
+                ? new PersistentEmbeddingCache(namedParameterJdbcTemplate, modelName)
+                : null;
+
+        return new CachingEmbeddingModel(
+                openAiEmbeddingModel,
+                modelName,
+                maxMemory.toBytes(),
+                persistentTier,
+                batchWindow,
+                maxBatchSize,
+                meterRegistry);
+    }
+}
@@ -0,0 +1,102 @@
+package com.company.agent.infrastructure.ai;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+// Recuperação híbrida: busca vetorial (pgvector) e textual (tsvector/trigramas) em paralelo,
+// combinadas por Reciprocal Rank Fusion
+@Slf4j
+public class HybridDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever vectorRetriever;
+    private final KeywordDocumentSearch keywordSearch;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    private final String tenant;
+    private final int topK;
+    private final int candidates;
+    private final int rrfK;
+    private final Filter.Expression filter;
+
+    // vectorRetriever já deve trazer 'candidates' resultados (e registrar a própria latência)
+    public HybridDocumentRetriever(DocumentRetriever vectorRetriever,
+                                   KeywordDocumentSearch keywordSearch,
+                                   Executor executor,
+                                   MeterRegistry meterRegistry,
+                                   String tenant,
+                                   int topK,
+                                   int candidates,
+                                   int rrfK,
+                                   Filter.Expression filter) {
+        this.vectorRetriever = vectorRetriever;
+        this.keywordSearch = keywordSearch;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.tenant = tenant;
+        this.topK = topK;
+        this.candidates = candidates;
+        this.rrfK = rrfK;
+        this.filter = filter;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        // Perna textual em paralelo; a vetorial roda na thread chamadora
+        CompletableFuture<List<Document>> keyword = CompletableFuture.supplyAsync(
+                () -> timed("keyword", () -> keywordSearch.search(tenant, query.text(), candidates, filter)), executor);
+
+        List<Document> vector = vectorRetriever.retrieve(query);
+
+        List<Document> keywordResults;
+        try {
+            keywordResults = keyword.join();
+        } catch (RuntimeException e) {
+            // Falha na busca textual degrada para resultado só vetorial
+            log.warn("Erro na busca textual, usando apenas resultado vetorial: {}", e.getMessage());
+            keywordResults = List.of();
+        }
+
+        return fuse(vector, keywordResults);
+    }
+
+    private List<Document> fuse(List<Document> vector, List<Document> keyword) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> documents = new LinkedHashMap<>();
+
+        for (List<Document> ranking : List.of(vector, keyword)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                scores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+                documents.putIfAbsent(document.getId(), document);
+            }
+        }
+
+        return documents.values().stream()
+                .sorted(Comparator.comparingDouble((Document document) -> scores.get(document.getId())).reversed())
+                .limit(topK)
+                .toList();
+    }
+
+    private List<Document> timed(String leg, Supplier<List<Document>> search) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return search.get();
+        } finally {
+            sample.stop(meterRegistry.timer("agent.rag.retrieval.latency", "leg", leg));
+        }
+    }
+}
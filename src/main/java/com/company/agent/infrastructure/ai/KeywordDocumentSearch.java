@@ -0,0 +1,65 @@
+package com.company.agent.infrastructure.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.PgVectorFilterExpressionConverter;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Busca textual (tsvector + trigramas) na vector_store, com o mesmo filtro de metadados do PgVectorStore
+@Component
+@RequiredArgsConstructor
+public class KeywordDocumentSearch {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    public List<Document> search(String tenant, String text, int limit, Filter.Expression filter) {
+        // Filtro convertido para jsonpath, exatamente como o PgVectorStore aplica na busca vetorial
+        String filterClause = filter != null
+                ? " AND metadata::jsonb @@ '" + filterConverter.convertExpression(filter) + "'::jsonpath"
+                : "";
+
+        // Predicado simples de tenant: aproveita o índice (tenant, source) da V8
+        if (tenant != null) {
+            filterClause = " AND metadata->>'tenant' = '" + tenant.replace("'", "''") + "'" + filterClause;
+        }
+
+        // Mesma expressão do índice GIN criado pelo VectorIndexManager, senão o planner não usa o índice
+        String tsvector = VectorIndexManager.CONTENT_TSVECTOR;
+        String sql = """
+                SELECT id::text AS id, content, metadata::text AS metadata
+                FROM vector_store
+                WHERE (%s @@ websearch_to_tsquery('simple', ?) OR ? <%% content)
+                %s
+                ORDER BY ts_rank_cd(%s, websearch_to_tsquery('simple', ?)) + word_similarity(?, content) DESC
+                LIMIT ?
+                """.formatted(tsvector, filterClause, tsvector);
+
+        return jdbcTemplate.query(sql,
+                (rs, rowNum) -> new Document(rs.getString("id"), rs.getString("content"),
+                        parseMetadata(rs.getString("metadata"))),
+                text, text, text, text, limit);
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+
+        try {
+            return objectMapper.readValue(json, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Metadados inválidos na vector_store", e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.company.agent.infrastructure.ai;
+
+import com.pgvector.PGvector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.Query;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Maximal Marginal Relevance: escolhe chunks relevantes e diferentes entre si, evitando que
+// quase-duplicatas ocupem vários slots do prompt. Usa os embeddings devolvidos pela própria busca
+// vetorial e o embedding da consulta vindo do cache (sem chamadas extras à API)
+@Component("mmr")
+@RequiredArgsConstructor
+public class MmrReranker implements DocumentReranker {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final EmbeddingModel embeddingModel;
+
+    // 1.0 = só relevância; valores menores penalizam mais a similaridade com os já escolhidos
+    @Value("${agent.rag.rerank.mmr-lambda:0.7}")
+    private double lambda;
+
+    @Override
+    public boolean usesEmbeddings() {
+        return true;
+    }
+
+    @Override
+    public List<Document> rerank(Query query, List<Document> candidates, int topK) {
+        if (candidates.size() <= 1) {
+            return candidates;
+        }
+
+        float[] queryEmbedding = normalize(embeddingModel.embed(query.text()));
+        Map<String, float[]> embeddings = loadEmbeddings(candidates);
+
+        List<Document> remaining = new ArrayList<>();
+        List<float[]> remainingVectors = new ArrayList<>();
+        for (Document candidate : candidates) {
+            float[] embedding = embeddings.get(candidate.getId());
+            if (embedding != null) {
+                remaining.add(candidate);
+                remainingVectors.add(embedding);
+            }
+        }
+
+        double[] relevance = new double[remaining.size()];
+        double[] maxRedundancy = new double[remaining.size()];
+        boolean[] selected = new boolean[remaining.size()];
+        for (int i = 0; i < remaining.size(); i++) {
+            relevance[i] = dot(queryEmbedding, remainingVectors.get(i));
+            maxRedundancy[i] = Double.NEGATIVE_INFINITY;
+        }
+
+        List<Document> result = new ArrayList<>(topK);
+        while (result.size() < topK && result.size() < remaining.size()) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < remaining.size(); i++) {
+                if (selected[i]) {
+                    continue;
+                }
+                double redundancy = result.isEmpty() ? 0 : maxRedundancy[i];
+                double score = lambda * relevance[i] - (1 - lambda) * redundancy;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+
+            selected[best] = true;
+            result.add(remaining.get(best));
+
+            // Atualização incremental: só a similaridade com o último escolhido é nova
+            float[] chosen = remainingVectors.get(best);
+            for (int i = 0; i < remaining.size(); i++) {
+                if (!selected[i]) {
+                    maxRedundancy[i] = Math.max(maxRedundancy[i], dot(chosen, remainingVectors.get(i)));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private Map<String, float[]> loadEmbeddings(List<Document> candidates) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (Document candidate : candidates) {
+            if (candidate.getMetadata().get(PgVectorSearch.EMBEDDING_METADATA) instanceof float[] embedding) {
+                embeddings.put(candidate.getId(), normalize(embedding));
+            } else {
+                missing.add(UUID.fromString(candidate.getId()));
+            }
+        }
+
+        // Só os candidatos sem embedding (ex.: vindos apenas da busca por palavras-chave no modo híbrido)
+        if (missing.isEmpty()) {
+            return embeddings;
+        }
+
+        jdbcTemplate.query("SELECT id::text AS id, embedding::text AS embedding FROM vector_store WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", missing),
+                rs -> {
+                    try {
+                        embeddings.put(rs.getString("id"), normalize(new PGvector(rs.getString("embedding")).toArray()));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Embedding inválido na vector_store", e);
+                    }
+                });
+        return embeddings;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return vector;
+        }
+
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,62 @@
+package com.company.agent.infrastructure.ai;
+
+import com.pgvector.PGvector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Camada Postgres do cache de embeddings (tabela embedding_cache)
+@RequiredArgsConstructor
+@Slf4j
+public class PersistentEmbeddingCache {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String modelName;
+
+    public Map<String, float[]> findAll(Collection<String> contentHashes) {
+        Map<String, float[]> found = new HashMap<>();
+
+        try {
+            jdbcTemplate.query("""
+                            SELECT content_hash, embedding::text AS embedding
+                            FROM embedding_cache
+                            WHERE model = :model AND content_hash IN (:hashes)
+                            """,
+                    new MapSqlParameterSource()
+                            .addValue("model", modelName)
+                            .addValue("hashes", contentHashes),
+                    rs -> {
+                        found.put(rs.getString("content_hash"), new PGvector(rs.getString("embedding")).toArray());
+                    });
+        } catch (Exception e) {
+            log.warn("Erro ao consultar cache persistente de embeddings: {}", e.getMessage());
+        }
+
+        return found;
+    }
+
+    public void saveAll(Map<String, float[]> embeddings) {
+        SqlParameterSource[] batch = embeddings.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("hash", entry.getKey())
+                        .addValue("model", modelName)
+                        .addValue("embedding", new PGvector(entry.getValue())))
+                .toArray(SqlParameterSource[]::new);
+
+        try {
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO embedding_cache (content_hash, model, embedding)
+                    VALUES (:hash, :model, :embedding)
+                    ON CONFLICT DO NOTHING
+                    """, batch);
+        } catch (Exception e) {
+            log.warn("Erro ao gravar cache persistente de embeddings: {}", e.getMessage());
+        }
+    }
+}
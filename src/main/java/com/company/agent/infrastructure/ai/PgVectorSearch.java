@@ -0,0 +1,176 @@
+package com.company.agent.infrastructure.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.PgVectorFilterExpressionConverter;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Busca ANN na vector_store com controle de hnsw.ef_search por consulta e predicado de tenant
+// literal, para que o planner use o índice HNSW parcial do tenant (ver VectorIndexManager)
+@Component
+public class PgVectorSearch {
+
+    // Metadado transitório com o embedding (float[]) do chunk, lido pelos re-rankers e removido
+    // antes de os documentos chegarem ao prompt (ver RerankingDocumentRetriever)
+    public static final String EMBEDDING_METADATA = "_embedding";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final VectorStorageMode storageMode;
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    // off | relaxed_order | strict_order (pgvector 0.8+): continua a varredura do grafo quando o filtro descarta vizinhos
+    @Value("${agent.rag.hnsw.iterative-scan:off}")
+    private String iterativeScan;
+
+    @Value("${spring.ai.vectorstore.pgvector.dimensions:1536}")
+    private int dimensions;
+
+    // Candidatos da passagem quantizada = top-k x multiplicador, re-ranqueados com o vetor completo
+    @Value("${agent.rag.storage.rerank-multiplier:4}")
+    private int rerankMultiplier;
+
+    public PgVectorSearch(JdbcTemplate jdbcTemplate,
+                          EmbeddingModel embeddingModel,
+                          ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager,
+                          VectorStorageMode storageMode) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.storageMode = storageMode;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public List<Document> search(String tenant, String query, int topK, double similarityThreshold,
+                                 Filter.Expression filter, int efSearch) {
+        return search(tenant, query, topK, similarityThreshold, filter, efSearch, false);
+    }
+
+    public List<Document> search(String tenant, String query, int topK, double similarityThreshold,
+                                 Filter.Expression filter, int efSearch, boolean includeEmbeddings) {
+        return search(tenant, embeddingModel.embed(query), topK, similarityThreshold, filter, efSearch,
+                includeEmbeddings);
+    }
+
+    public List<Document> search(String tenant, float[] embedding, int topK, double similarityThreshold,
+                                 Filter.Expression filter, int efSearch) {
+        return search(tenant, embedding, topK, similarityThreshold, filter, efSearch, false);
+    }
+
+    // includeEmbeddings: devolve o embedding de cada chunk em EMBEDDING_METADATA na mesma consulta,
+    // evitando a segunda ida ao banco do re-ranking (MMR)
+    public List<Document> search(String tenant, float[] embedding, int topK, double similarityThreshold,
+                                 Filter.Expression filter, int efSearch, boolean includeEmbeddings) {
+        StringBuilder predicates = new StringBuilder();
+        if (tenant != null) {
+            // Literal (não bind): com plano genérico o planner não conseguiria provar o predicado do índice parcial
+            predicates.append(" AND metadata->>'tenant' = ").append(quote(tenant));
+        }
+        if (filter != null) {
+            predicates.append(" AND metadata::jsonb @@ '")
+                    .append(filterConverter.convertExpression(filter))
+                    .append("'::jsonpath");
+        }
+
+        PGvector vector = new PGvector(embedding);
+        double maxDistance = 1 - similarityThreshold;
+
+        // Cast para texto só nas linhas devolvidas (no modo quantizado, depois do corte do top-k)
+        String embeddingColumn = includeEmbeddings ? ", embedding::text AS embedding" : "";
+
+        String sql;
+        Object[] args;
+        int graphCandidates;
+
+        if (storageMode.isQuantized()) {
+            // Passagem ANN no índice quantizado e re-ranking pela distância float32; threshold e top-k
+            // aplicados depois do re-ranking, com a mesma semântica do SearchRequest
+            graphCandidates = topK * rerankMultiplier;
+            sql = """
+                    SELECT id, content, metadata, distance%s FROM (
+                        SELECT id::text AS id, content, metadata::text AS metadata, embedding,
+                               embedding <=> ? AS distance
+                        FROM vector_store
+                        WHERE true %s
+                        ORDER BY %s
+                        LIMIT ?
+                    ) candidates
+                    WHERE distance < ?
+                    ORDER BY distance
+                    LIMIT ?
+                    """.formatted(embeddingColumn, predicates, storageMode.annDistance(dimensions));
+            args = new Object[]{vector, vector, graphCandidates, maxDistance, topK};
+        } else {
+            graphCandidates = topK;
+            sql = """
+                    SELECT id::text AS id, content, metadata::text AS metadata, embedding <=> ? AS distance%s
+                    FROM vector_store
+                    WHERE embedding <=> ? < ? %s
+                    ORDER BY distance
+                    LIMIT ?
+                    """.formatted(embeddingColumn, predicates);
+            args = new Object[]{vector, vector, maxDistance, topK};
+        }
+
+        // SET LOCAL via set_config: vale só para a transação da consulta, sem vazar para a conexão do pool
+        return readOnlyTransaction.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', ?, true)", String.class,
+                    String.valueOf(Math.max(efSearch, graphCandidates)));
+            if (!"off".equalsIgnoreCase(iterativeScan)) {
+                jdbcTemplate.queryForObject("SELECT set_config('hnsw.iterative_scan', ?, true)", String.class,
+                        iterativeScan);
+            }
+
+            return jdbcTemplate.query(sql, (rs, rowNum) -> {
+                Map<String, Object> metadata = parseMetadata(rs.getString("metadata"));
+                metadata.put("distance", rs.getFloat("distance"));
+                if (includeEmbeddings) {
+                    metadata.put(EMBEDDING_METADATA, toArray(rs.getString("embedding")));
+                }
+                return new Document(rs.getString("id"), rs.getString("content"), metadata);
+            }, args);
+        });
+    }
+
+    private static float[] toArray(String value) {
+        try {
+            return new PGvector(value).toArray();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Embedding inválido na vector_store", e);
+        }
+    }
+
+    private String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+
+        try {
+            return objectMapper.readValue(json, new TypeReference<HashMap<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Metadados inválidos na vector_store", e);
+        }
+    }
+}
@@ -1,20 +1,46 @@
 package com.company.agent.infrastructure.ai;
 
-import lombok.RequiredArgsConstructor;
+import com.company.agent.domain.PhaseContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.document.*;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
-@RequiredArgsConstructor
-public class RagAdvisorConfig {
+@Slf4j
+public class RagAdvisorConfig implements DisposableBean {
+
+    // Variáveis da fase que sobrepõem modo de recuperação, top-k, ef_search e re-ranking globais
+    static final String RETRIEVAL_VARIABLE = "ragRetrieval";
+    static final String TOP_K_VARIABLE = "ragTopK";
+    static final String EF_SEARCH_VARIABLE = "ragEfSearch";
+    static final String RERANK_VARIABLE = "ragRerank";
 
     private final VectorStore vectorStore;
+    private final PgVectorSearch vectorSearch;
+    private final KeywordDocumentSearch keywordSearch;
+    private final Map<String, DocumentReranker> rerankers;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService keywordExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final FilterExpressionTextParser filterParser = new FilterExpressionTextParser();
+
+    // Retrievers prontos (com o Filter.Expression já parseado) por filtro combinado tenant/fase
+    private final Cache<String, RagRetrieval> retrievalCache;
 
     @Value("${agent.rag.similarity-threshold:0.75}")
     private double defaultSimilarityThreshold;
@@ -22,11 +48,49 @@ public class RagAdvisorConfig {
     @Value("${agent.rag.top-k:6}")
     private int defaultTopK;
 
+    @Value("${agent.rag.hnsw.ef-search:40}")
+    private int defaultEfSearch;
+
+    @Value("${agent.rag.retrieval:vector}")
+    private String defaultRetrieval;
+
+    @Value("${agent.rag.hybrid.candidates-multiplier:3}")
+    private int hybridCandidatesMultiplier;
+
+    @Value("${agent.rag.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    // none ou o nome de um bean DocumentReranker (ex.: mmr)
+    @Value("${agent.rag.rerank.strategy:none}")
+    private String defaultRerank;
+
+    @Value("${agent.rag.rerank.candidates-multiplier:3}")
+    private int rerankCandidatesMultiplier;
+
+    public RagAdvisorConfig(VectorStore vectorStore,
+                            PgVectorSearch vectorSearch,
+                            KeywordDocumentSearch keywordSearch,
+                            Map<String, DocumentReranker> rerankers,
+                            MeterRegistry meterRegistry,
+                            @Value("${agent.cache.rag-advisor.max-size:1000}") long maxSize) {
+        this.vectorStore = vectorStore;
+        this.vectorSearch = vectorSearch;
+        this.keywordSearch = keywordSearch;
+        this.rerankers = rerankers;
+        this.meterRegistry = meterRegistry;
+        this.retrievalCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, retrievalCache, "ragAdvisor");
+    }
+
     @Bean
     public RetrievalAugmentationAdvisor defaultRagAdvisor() {
         // Criar um DocumentRetriever simples usando o VectorStore
         DocumentRetriever retriever = query -> {
-            SearchRequest searchRequest = SearchRequest.query(String.valueOf(query))
+            SearchRequest searchRequest = SearchRequest.query(query.text())
                     .withTopK(defaultTopK)
                     .withSimilarityThreshold(defaultSimilarityThreshold);
             return vectorStore.similaritySearch(searchRequest);
@@ -37,70 +101,101 @@ public class RagAdvisorConfig {
                 .userTextAdvise("""
                         Use the following context information to help answer the user's question.
                         If the context doesn't contain relevant information, please indicate that clearly.
-                        
+
                         Context: {context}
-                        
+
                         Question: {input}
                         """)
                 .build();
     }
 
+    @Override
+    public void destroy() {
+        keywordExecutor.shutdownNow();
+    }
+
+    // Modo de recuperação (vetorial ou híbrido), top-k, ef_search e re-ranking efetivos para a fase
+    public RetrievalSettings retrievalSettings(PhaseContext phaseContext) {
+        String retrieval = stringVariable(phaseContext, RETRIEVAL_VARIABLE, defaultRetrieval);
+        String rerank = stringVariable(phaseContext, RERANK_VARIABLE, defaultRerank);
+
+        return new RetrievalSettings("hybrid".equalsIgnoreCase(retrieval),
+                intVariable(phaseContext, TOP_K_VARIABLE, defaultTopK),
+                intVariable(phaseContext, EF_SEARCH_VARIABLE, defaultEfSearch),
+                "none".equalsIgnoreCase(rerank) ? null : rerank);
+    }
+
+    // RAG Advisor restrito ao tenant e ao filtro definido no contexto da fase
+    public RetrievalAugmentationAdvisor createRagAdvisorForTenant(String tenant, String ragFilter) {
+        return createRagAdvisorForTenant(tenant, ragFilter, retrievalSettings(null));
+    }
+
+    public RetrievalAugmentationAdvisor createRagAdvisorForTenant(String tenant, String ragFilter,
+                                                                  RetrievalSettings settings) {
+        return retrievalForTenant(tenant, ragFilter, settings).toAdvisor();
+    }
+
+    // Retriever + template (cacheados) restritos ao tenant e ao filtro da fase; usado pelo ContextAssembler
+    public RagRetrieval retrievalForTenant(String tenant, String ragFilter, RetrievalSettings settings) {
+        return filterRetrieval(tenant, combineFilter(tenant, ragFilter), settings);
+    }
+
+    // Remove do cache os retrievers (de qualquer modo) de um filtro que deixou de ser usado pela fase
+    public void evictRagFilter(String tenant, String ragFilter) {
+        if (ragFilter != null && !ragFilter.trim().isEmpty()) {
+            String suffix = ":" + combineFilter(tenant, ragFilter);
+            retrievalCache.asMap().keySet().removeIf(key -> key.startsWith("filter:") && key.endsWith(suffix));
+        }
+    }
+
     // Factory method para criar RAG Advisor com filtros específicos
     public RetrievalAugmentationAdvisor createRagAdvisorWithFilter(String filterExpression) {
-        DocumentRetriever retriever = query -> {
-            SearchRequest.Builder searchBuilder = SearchRequest.query(query)
-                    .withTopK(defaultTopK)
-                    .withSimilarityThreshold(defaultSimilarityThreshold);
+        return createRagAdvisorWithFilter(filterExpression, retrievalSettings(null));
+    }
 
-            if (filterExpression != null && !filterExpression.trim().isEmpty()) {
-                try {
-                    searchBuilder.withFilterExpression(filterExpression);
-                } catch (Exception e) {
-                    System.err.println("Erro ao aplicar filtro RAG: " + e.getMessage());
-                }
-            }
+    public RetrievalAugmentationAdvisor createRagAdvisorWithFilter(String filterExpression, RetrievalSettings settings) {
+        return filterRetrieval(null, filterExpression, settings).toAdvisor();
+    }
 
-            return vectorStore.similaritySearch(searchBuilder.build());
-        };
+    private RagRetrieval filterRetrieval(String tenant, String filterExpression, RetrievalSettings settings) {
+        return retrievalCache.get("filter:" + settings.cacheKey() + ":" + filterExpression, key -> {
+            Filter.Expression filter = parseFilter(filterExpression);
 
-        return RetrievalAugmentationAdvisor.builder()
-                .documentRetriever(retriever)
-                .userTextAdvise("""
-                        Use the following context information to help answer the user's question.
-                        Context is filtered based on current phase and tenant.
-                        
-                        Context: {context}
-                        
-                        Question: {input}
-                        """)
-                .build();
+            return new RagRetrieval(retriever(tenant, defaultSimilarityThreshold, settings, filter), """
+                    Use the following context information to help answer the user's question.
+                    Context is filtered based on current phase and tenant.
+
+                    Context: {context}
+
+                    Question: {input}
+                    """);
+        });
     }
 
     // Factory method para criar RAG Advisor para uma fase específica
     public RetrievalAugmentationAdvisor createRagAdvisorForPhase(String tenant, String phaseName) {
-        DocumentRetriever retriever = query -> {
-            String filterExpression = String.format("tenant == '%s' && phase == '%s'", tenant, phaseName);
+        return createRagAdvisorForPhase(tenant, phaseName, retrievalSettings(null));
+    }
 
-            SearchRequest searchRequest = SearchRequest.query(query)
-                    .withTopK(defaultTopK)
-                    .withSimilarityThreshold(defaultSimilarityThreshold)
-                    .withFilterExpression(filterExpression)
-                    .build();
+    public RetrievalAugmentationAdvisor createRagAdvisorForPhase(String tenant, String phaseName,
+                                                                 RetrievalSettings settings) {
+        return retrievalForPhase(tenant, phaseName, settings).toAdvisor();
+    }
 
-            return vectorStore.similaritySearch(searchRequest);
-        };
+    public RagRetrieval retrievalForPhase(String tenant, String phaseName, RetrievalSettings settings) {
+        return retrievalCache.get("phase:" + settings.cacheKey() + ":" + tenant + ":" + phaseName, key -> {
+            Filter.Expression filter = parseFilter(
+                    String.format("tenant == '%s' && phase == '%s'", tenant, phaseName));
 
-        return RetrievalAugmentationAdvisor.builder()
-                .documentRetriever(retriever)
-                .userTextAdvise(String.format("""
-                        Use the following context information specific to phase '%s' to help answer the user's question.
-                        This context is filtered for the current phase and should be most relevant.
-                        
-                        Context: {context}
-                        
-                        Question: {input}
-                        """, phaseName))
-                .build();
+            return new RagRetrieval(retriever(tenant, defaultSimilarityThreshold, settings, filter), String.format("""
+                    Use the following context information specific to phase '%s' to help answer the user's question.
+                    This context is filtered for the current phase and should be most relevant.
+
+                    Context: {context}
+
+                    Question: {input}
+                    """, phaseName));
+        });
     }
 
     // Factory method para criar RAG Advisor com configurações customizadas
@@ -110,27 +205,14 @@ public class RagAdvisorConfig {
             String filterExpression,
             String customPromptTemplate) {
 
-        DocumentRetriever retriever = query -> {
-            SearchRequest.Builder searchBuilder = SearchRequest.query(query)
-                    .withTopK(topK)
-                    .withSimilarityThreshold(similarityThreshold);
-
-            if (filterExpression != null && !filterExpression.trim().isEmpty()) {
-                try {
-                    searchBuilder.withFilterExpression(filterExpression);
-                } catch (Exception e) {
-                    System.err.println("Erro ao aplicar filtro RAG customizado: " + e.getMessage());
-                }
-            }
-
-            return vectorStore.similaritySearch(searchBuilder.build());
-        };
+        DocumentRetriever retriever = filteredRetriever(null, similarityThreshold, topK, defaultEfSearch,
+                parseFilter(filterExpression));
 
         String promptTemplate = customPromptTemplate != null ? customPromptTemplate : """
                 Use the following context information to help answer the user's question.
-                
+
                 Context: {context}
-                
+
                 Question: {input}
                 """;
 
@@ -139,4 +221,105 @@ public class RagAdvisorConfig {
                 .userTextAdvise(promptTemplate)
                 .build();
     }
-}
\ No newline at end of file
+
+    private DocumentRetriever retriever(String tenant, double similarityThreshold, RetrievalSettings settings,
+                                        Filter.Expression filter) {
+        DocumentReranker reranker = null;
+        if (settings.reranker() != null) {
+            reranker = rerankers.get(settings.reranker());
+            if (reranker == null) {
+                log.warn("Re-ranker '{}' não encontrado, usando ordem da recuperação", settings.reranker());
+            }
+        }
+
+        // Com re-ranking, a recuperação traz mais candidatos e o re-ranker reduz a top-k
+        int retrievalTopK = reranker != null ? settings.topK() * rerankCandidatesMultiplier : settings.topK();
+        boolean includeEmbeddings = reranker != null && reranker.usesEmbeddings();
+
+        DocumentRetriever retriever;
+        if (settings.hybrid()) {
+            int candidates = retrievalTopK * hybridCandidatesMultiplier;
+            retriever = new HybridDocumentRetriever(
+                    filteredRetriever(tenant, similarityThreshold, candidates, settings.efSearch(), filter,
+                            includeEmbeddings),
+                    keywordSearch, keywordExecutor, meterRegistry, tenant, retrievalTopK, candidates, rrfK, filter);
+        } else {
+            retriever = filteredRetriever(tenant, similarityThreshold, retrievalTopK, settings.efSearch(), filter,
+                    includeEmbeddings);
+        }
+
+        return reranker != null
+                ? new RerankingDocumentRetriever(retriever, reranker, settings.reranker(), settings.topK(), meterRegistry)
+                : retriever;
+    }
+
+    private DocumentRetriever filteredRetriever(String tenant, double similarityThreshold, int topK, int efSearch,
+                                                Filter.Expression filter) {
+        return filteredRetriever(tenant, similarityThreshold, topK, efSearch, filter, false);
+    }
+
+    private DocumentRetriever filteredRetriever(String tenant, double similarityThreshold, int topK, int efSearch,
+                                                Filter.Expression filter, boolean includeEmbeddings) {
+        // Mesma métrica da perna vetorial do modo híbrido, para comparação direta
+        return query -> meterRegistry.timer("agent.rag.retrieval.latency", "leg", "vector")
+                .record(() -> vectorSearch.search(tenant, query.text(), topK, similarityThreshold, filter, efSearch,
+                        includeEmbeddings));
+    }
+
+    private String stringVariable(PhaseContext phaseContext, String name, String defaultValue) {
+        if (phaseContext == null || phaseContext.getVariables() == null || phaseContext.getVariables().get(name) == null) {
+            return defaultValue;
+        }
+        return phaseContext.getVariables().get(name).toString();
+    }
+
+    private int intVariable(PhaseContext phaseContext, String name, int defaultValue) {
+        if (phaseContext == null || phaseContext.getVariables() == null || phaseContext.getVariables().get(name) == null) {
+            return defaultValue;
+        }
+
+        Object value = phaseContext.getVariables().get(name);
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            log.warn("Valor inválido para '{}': {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    private Filter.Expression parseFilter(String filterExpression) {
+        if (filterExpression == null || filterExpression.trim().isEmpty()) {
+            return null;
+        }
+
+        try {
+            return filterParser.parse(filterExpression);
+        } catch (Exception e) {
+            log.error("Erro ao aplicar filtro RAG '{}': {}", filterExpression, e.getMessage());
+            return null;
+        }
+    }
+
+    private String combineFilter(String tenant, String ragFilter) {
+        return String.format("tenant == '%s' && (%s)", tenant, ragFilter);
+    }
+
+    // Retriever e template do texto do usuário ({context} e {input}) de um filtro tenant/fase
+    public record RagRetrieval(DocumentRetriever retriever, String userTextTemplate) {
+
+        public RetrievalAugmentationAdvisor toAdvisor() {
+            return RetrievalAugmentationAdvisor.builder()
+                    .documentRetriever(retriever)
+                    .userTextAdvise(userTextTemplate)
+                    .build();
+        }
+    }
+
+    public record RetrievalSettings(boolean hybrid, int topK, int efSearch, String reranker) {
+
+        String cacheKey() {
+            return (hybrid ? "hybrid" : "vector") + ":" + topK + ":" + efSearch + ":"
+                    + (reranker != null ? reranker : "none");
+        }
+    }
+}
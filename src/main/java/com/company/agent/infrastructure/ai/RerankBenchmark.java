@@ -0,0 +1,140 @@
+package com.company.agent.infrastructure.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Benchmark do estágio de re-ranking sobre os dados reais do tenant: usa trechos de chunks armazenados
+// como consultas e compara a recuperação direta do top-k com candidatos ampliados + re-ranker
+// (latência adicionada e redundância média entre os chunks que iriam para o prompt)
+@Component
+@Slf4j
+public class RerankBenchmark {
+
+    // Sem limite de similaridade: mede o estágio, não o corte por threshold
+    private static final double NO_THRESHOLD = -1.0;
+
+    private static final int QUERY_CHARS = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgVectorSearch vectorSearch;
+    private final Map<String, DocumentReranker> rerankers;
+
+    public RerankBenchmark(JdbcTemplate jdbcTemplate,
+                           PgVectorSearch vectorSearch,
+                           Map<String, DocumentReranker> rerankers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.vectorSearch = vectorSearch;
+        this.rerankers = rerankers;
+    }
+
+    public Result run(String tenant, String rerankerName, int samples, int topK, int candidatesMultiplier, int efSearch) {
+        DocumentReranker reranker = rerankers.get(rerankerName);
+        if (reranker == null) {
+            throw new IllegalArgumentException("Re-ranker não encontrado: " + rerankerName);
+        }
+
+        List<String> queries = jdbcTemplate.queryForList("""
+                SELECT left(content, ?) FROM vector_store
+                WHERE metadata->>'tenant' = ?
+                ORDER BY random()
+                LIMIT ?
+                """, String.class, QUERY_CHARS, tenant, samples);
+
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum documento indexado para o tenant " + tenant);
+        }
+
+        long[] baselineLatencies = new long[queries.size()];
+        long[] candidateLatencies = new long[queries.size()];
+        long[] rerankLatencies = new long[queries.size()];
+        double baselineRedundancy = 0;
+        double rerankedRedundancy = 0;
+
+        for (int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+
+            long start = System.nanoTime();
+            vectorSearch.search(tenant, query, topK, NO_THRESHOLD, null, efSearch);
+            baselineLatencies[i] = System.nanoTime() - start;
+
+            // Embeddings sempre devolvidos aqui: a redundância é medida com eles mesmo para re-rankers que não os usam
+            start = System.nanoTime();
+            List<Document> candidates = vectorSearch.search(tenant, query, topK * candidatesMultiplier,
+                    NO_THRESHOLD, null, efSearch, true);
+            candidateLatencies[i] = System.nanoTime() - start;
+
+            Map<String, float[]> embeddings = new HashMap<>();
+            for (Document candidate : candidates) {
+                embeddings.put(candidate.getId(), (float[]) candidate.getMetadata().get(PgVectorSearch.EMBEDDING_METADATA));
+            }
+
+            start = System.nanoTime();
+            List<Document> reranked = candidates.size() <= topK
+                    ? candidates
+                    : reranker.rerank(new Query(query), candidates, topK);
+            rerankLatencies[i] = System.nanoTime() - start;
+
+            baselineRedundancy += redundancy(candidates.subList(0, Math.min(topK, candidates.size())), embeddings);
+            rerankedRedundancy += redundancy(reranked, embeddings);
+        }
+
+        Arrays.sort(baselineLatencies);
+        Arrays.sort(candidateLatencies);
+        Arrays.sort(rerankLatencies);
+        Result result = new Result(rerankerName, queries.size(), topK, topK * candidatesMultiplier,
+                percentileMillis(baselineLatencies, 0.50), percentileMillis(baselineLatencies, 0.95),
+                percentileMillis(candidateLatencies, 0.50), percentileMillis(candidateLatencies, 0.95),
+                percentileMillis(rerankLatencies, 0.50), percentileMillis(rerankLatencies, 0.95),
+                baselineRedundancy / queries.size(), rerankedRedundancy / queries.size());
+        log.info("Benchmark de re-ranking tenant {}: {}", tenant, result);
+        return result;
+    }
+
+    // Similaridade de cosseno média entre os pares de chunks escolhidos (maior = mais quase-duplicatas)
+    private static double redundancy(List<Document> documents, Map<String, float[]> embeddings) {
+        double sum = 0;
+        int pairs = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            float[] a = embeddings.get(documents.get(i).getId());
+            for (int j = i + 1; j < documents.size(); j++) {
+                float[] b = embeddings.get(documents.get(j).getId());
+                if (a != null && b != null) {
+                    sum += cosine(a, b);
+                    pairs++;
+                }
+            }
+        }
+        return pairs == 0 ? 0 : sum / pairs;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    public record Result(String reranker, int samples, int topK, int candidates,
+                         double baselineP50Millis, double baselineP95Millis,
+                         double candidatesP50Millis, double candidatesP95Millis,
+                         double rerankP50Millis, double rerankP95Millis,
+                         double baselineRedundancy, double rerankedRedundancy) {}
+}
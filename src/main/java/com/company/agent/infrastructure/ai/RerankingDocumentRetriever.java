@@ -0,0 +1,60 @@
+package com.company.agent.infrastructure.ai;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.List;
+
+// Recupera candidatos ampliados no retriever base e reduz a topK com o DocumentReranker da fase
+@Slf4j
+public class RerankingDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever candidateRetriever;
+    private final DocumentReranker reranker;
+    private final String rerankerName;
+    private final int topK;
+    private final MeterRegistry meterRegistry;
+
+    public RerankingDocumentRetriever(DocumentRetriever candidateRetriever,
+                                      DocumentReranker reranker,
+                                      String rerankerName,
+                                      int topK,
+                                      MeterRegistry meterRegistry) {
+        this.candidateRetriever = candidateRetriever;
+        this.reranker = reranker;
+        this.rerankerName = rerankerName;
+        this.topK = topK;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        List<Document> candidates = candidateRetriever.retrieve(query);
+        if (candidates.size() <= topK) {
+            return stripEmbeddings(candidates);
+        }
+
+        try {
+            // Latência adicionada pelo estágio, comparável a agent.rag.retrieval.latency
+            return stripEmbeddings(meterRegistry.timer("agent.rag.rerank.latency", "reranker", rerankerName)
+                    .record(() -> reranker.rerank(query, candidates, topK)));
+        } catch (RuntimeException e) {
+            // Falha no re-ranking não derruba a recuperação: mantém a ordem original
+            log.warn("Erro no re-ranking '{}', usando ordem original: {}", rerankerName, e.getMessage());
+            return stripEmbeddings(candidates.subList(0, topK));
+        }
+    }
+
+    // O embedding transitório da busca vetorial não segue para o prompt nem para o contexto do advisor
+    private static List<Document> stripEmbeddings(List<Document> documents) {
+        for (Document document : documents) {
+            if (document.getMetadata().containsKey(PgVectorSearch.EMBEDDING_METADATA)) {
+                document.getMetadata().remove(PgVectorSearch.EMBEDDING_METADATA);
+            }
+        }
+        return documents;
+    }
+}
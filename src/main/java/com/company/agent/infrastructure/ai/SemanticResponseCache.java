@@ -0,0 +1,176 @@
+package com.company.agent.infrastructure.ai;
+
+import com.company.agent.domain.PhaseContext;
+import com.company.agent.domain.Task;
+import com.pgvector.PGvector;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+// Cache semântico: reaproveita o resultado de uma task SUCCEEDED com prompt similar no mesmo escopo
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SemanticResponseCache {
+
+    static final String PHASE_VARIABLE = "semanticCache";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${agent.semantic-cache.enabled:false}")
+    private boolean enabledByDefault;
+
+    @Value("${agent.semantic-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    @Value("${agent.semantic-cache.ttl:PT24H}")
+    private Duration ttl;
+
+    // Entradas mais recentes do escopo comparadas por distância exata (ver lookup)
+    @Value("${agent.semantic-cache.max-scope-rows:5000}")
+    private int maxScopeRows;
+
+    // promptScope: template do prompt do sistema + variáveis estáveis (ContextAssembler.promptScope), não o
+    // prompt renderizado, que inclui taskId/timestamp e nunca se repetiria entre tasks
+    public Lookup lookup(Task task, PhaseContext phaseContext, String promptScope) {
+        if (!isEnabled(phaseContext)) {
+            return Lookup.DISABLED;
+        }
+
+        String phaseName = phaseContext != null ? phaseContext.getPhaseName() : "DEFAULT";
+        String systemPromptHash = sha256(promptScope);
+
+        try {
+            float[] embedding = embeddingModel.embed(task.getPrompt());
+            PGvector vector = new PGvector(embedding);
+
+            // Busca exata dentro do escopo (índice btree de tenant/fase/prompt): um índice HNSW global devolveria
+            // só ef_search candidatos da tabela inteira, em geral de outros escopos, e o cache quase nunca acertaria.
+            // O CTE materializado impede o planner de trocar o escopo pelo índice ANN
+            List<Match> matches = jdbcTemplate.query("""
+                            WITH scoped AS MATERIALIZED (
+                                SELECT task_id, embedding
+                                FROM semantic_cache
+                                WHERE tenant = ? AND phase_name = ? AND system_prompt_hash = ?
+                                  AND expires_at > CURRENT_TIMESTAMP
+                                ORDER BY created_at DESC
+                                LIMIT ?
+                            )
+                            SELECT s.task_id, t.result, 1 - (s.embedding <=> ?) AS similarity
+                            FROM scoped s
+                            JOIN tasks t ON t.id = s.task_id
+                            WHERE t.status = 'SUCCEEDED'
+                            ORDER BY s.embedding <=> ?
+                            LIMIT 1
+                            """,
+                    (rs, rowNum) -> new Match(
+                            rs.getObject("task_id", UUID.class),
+                            rs.getString("result"),
+                            rs.getDouble("similarity")),
+                    task.getTenant(), phaseName, systemPromptHash, maxScopeRows, vector, vector);
+
+            Match best = matches.isEmpty() ? null : matches.get(0);
+            boolean hit = best != null && best.similarity() >= similarityThreshold;
+
+            meterRegistry.counter("agent.semantic_cache.lookups",
+                    "result", hit ? "hit" : "miss",
+                    "phase", phaseName).increment();
+
+            if (hit) {
+                log.debug("Cache semântico: task {} reaproveita task {} (similaridade {})",
+                        task.getId(), best.taskId(), best.similarity());
+                return new Lookup(true, task.getTenant(), phaseName, systemPromptHash, embedding, best.result());
+            }
+
+            return new Lookup(true, task.getTenant(), phaseName, systemPromptHash, embedding, null);
+
+        } catch (Exception e) {
+            log.warn("Erro na consulta ao cache semântico para task {}: {}", task.getId(), e.getMessage());
+            meterRegistry.counter("agent.semantic_cache.lookups", "result", "error", "phase", phaseName).increment();
+            return Lookup.DISABLED;
+        }
+    }
+
+    public void store(Lookup lookup, Task task) {
+        if (!lookup.enabled() || lookup.isHit() || task.getStatus() != Task.Status.SUCCEEDED) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.update("""
+                            INSERT INTO semantic_cache (task_id, tenant, phase_name, system_prompt_hash, embedding, expires_at)
+                            VALUES (?, ?, ?, ?, ?, ?)
+                            """,
+                    task.getId(), lookup.tenant(), lookup.phaseName(), lookup.systemPromptHash(),
+                    new PGvector(lookup.embedding()), Timestamp.valueOf(LocalDateTime.now().plus(ttl)));
+        } catch (Exception e) {
+            log.warn("Erro ao gravar task {} no cache semântico: {}", task.getId(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.semantic-cache.cleanup-interval:PT10M}")
+    public void purgeExpired() {
+        try {
+            int removed = jdbcTemplate.update("DELETE FROM semantic_cache WHERE expires_at <= CURRENT_TIMESTAMP");
+            if (removed > 0) {
+                log.debug("{} entradas expiradas removidas do cache semântico", removed);
+            }
+        } catch (Exception e) {
+            log.warn("Erro ao limpar cache semântico: {}", e.getMessage());
+        }
+    }
+
+    private boolean isEnabled(PhaseContext phaseContext) {
+        // A variável 'semanticCache' da fase sobrepõe o padrão global
+        if (phaseContext != null && phaseContext.getVariables() != null) {
+            Object value = phaseContext.getVariables().get(PHASE_VARIABLE);
+            if (value != null) {
+                return Boolean.parseBoolean(value.toString());
+            }
+        }
+        return enabledByDefault;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private record Match(UUID taskId, String result, double similarity) {}
+
+    public record Lookup(
+            boolean enabled,
+            String tenant,
+            String phaseName,
+            String systemPromptHash,
+            float[] embedding,
+            String cachedResult
+    ) {
+        static final Lookup DISABLED = new Lookup(false, null, null, null, null, null);
+
+        public boolean isHit() {
+            return cachedResult != null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.company.agent.infrastructure.ai;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+// Índices da vector_store, todos criados com CONCURRENTLY (sem bloquear leitura nem ingestão): HNSW global
+// na representação do VectorStorageMode, HNSW parciais por tenant (cada tenant grande ganha um grafo
+// próprio, em vez de pós-filtrar o global) e os índices textuais da busca híbrida
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorIndexManager {
+
+    // Índice float32 criado pela V8 (mesmo nome usado pelo PgVectorStore)
+    static final String FULL_INDEX = "spring_ai_vector_index";
+
+    // Expressão indexada da busca por palavra-chave; a consulta (KeywordDocumentSearch) usa exatamente esta.
+    // Índice de expressão em vez de coluna STORED: nada de reescrever a tabela para adicionar a busca textual
+    static final String CONTENT_TSVECTOR = "to_tsvector('simple', coalesce(content, ''))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VectorStorageMode storageMode;
+
+    @Value("${spring.ai.vectorstore.pgvector.dimensions:1536}")
+    private int dimensions;
+
+    // Remove o índice float32 quando o índice quantizado estiver válido (é ele que não cabe em RAM)
+    @Value("${agent.rag.storage.drop-full-index:false}")
+    private boolean dropFullIndex;
+
+    @Value("${agent.rag.hnsw.tenant-indexes:false}")
+    private boolean tenantIndexesEnabled;
+
+    // Abaixo disso o índice global (ou seq scan) atende bem e não compensa um grafo dedicado
+    @Value("${agent.rag.hnsw.tenant-index-min-rows:10000}")
+    private long tenantIndexMinRows;
+
+    @Value("${agent.rag.hnsw.m:16}")
+    private int m;
+
+    @Value("${agent.rag.hnsw.ef-construction:64}")
+    private int efConstruction;
+
+    // Migração das linhas existentes para o modo quantizado: o índice é uma expressão sobre a coluna
+    // embedding, então basta construí-lo (CONCURRENTLY, sem bloquear escrita); roda fora da thread de startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureGlobalIndex() {
+        String indexName = storageMode.isQuantized()
+                ? "vector_store_hnsw_" + storageMode.indexSuffix() + "global"
+                : FULL_INDEX;
+
+        Thread.ofVirtual().name("vector-index-build").start(() -> {
+            try {
+                Map<String, Object> index = describe(indexName);
+                if (index == null || !Boolean.TRUE.equals(index.get("valid"))) {
+                    if (index != null) {
+                        // Build CONCURRENTLY interrompido deixa um índice inválido para trás
+                        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+                    }
+                    log.info("Criando índice HNSW global {} (modo {})", indexName, storageMode);
+                    build(indexName, "");
+                } else if (!hasBuildOptions(index)) {
+                    rebuildGlobal(indexName, index);
+                }
+
+                if (storageMode.isQuantized() && dropFullIndex && isValid(indexName)) {
+                    log.info("Removendo índice float32 {} (modo {})", FULL_INDEX, storageMode);
+                    jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + FULL_INDEX);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Erro ao preparar índice HNSW {}: {}", storageMode, e.getMessage());
+            }
+        });
+    }
+
+    // m/ef_construction alterados: o novo grafo é construído com outro nome e troca de lugar com o atual,
+    // então as buscas seguem usando o índice antigo durante todo o build
+    private void rebuildGlobal(String indexName, Map<String, Object> index) {
+        String replacement = indexName + "_rebuild";
+        log.info("Recriando índice HNSW global {} ({} -> m={}, ef_construction={})",
+                indexName, index.get("options"), m, efConstruction);
+
+        // Sobra de uma troca interrompida
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + replacement);
+        build(replacement, "");
+
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+        jdbcTemplate.execute("ALTER INDEX " + replacement + " RENAME TO " + indexName);
+    }
+
+    // Índices da perna textual (configuração 'simple': sem stemming, preserva códigos e números de ticket)
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureKeywordIndexes() {
+        Thread.ofVirtual().name("keyword-index-build").start(() -> {
+            try {
+                ensureIndex("idx_vector_store_content_tsv", "USING gin ((" + CONTENT_TSVECTOR + "))");
+                // Trigramas (pg_trgm habilitado na V3) para correspondência aproximada de termos
+                ensureIndex("idx_vector_store_content_trgm", "USING gin (content gin_trgm_ops)");
+            } catch (DataAccessException e) {
+                log.warn("Erro ao preparar índices textuais da vector_store: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void ensureIndex(String indexName, String definition) {
+        Map<String, Object> index = describe(indexName);
+        if (index != null && Boolean.TRUE.equals(index.get("valid"))) {
+            return;
+        }
+        if (index != null) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+        }
+
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + indexName + " ON vector_store " + definition);
+        log.info("Índice {} criado em {} ms", indexName, System.currentTimeMillis() - start);
+    }
+
+    // Cria (ou recria, se os parâmetros de build mudaram) o índice parcial do tenant.
+    // CREATE INDEX CONCURRENTLY não pode rodar em transação: chamar fora de TransactionTemplate
+    public void ensureTenantIndex(String tenant) {
+        if (!tenantIndexesEnabled) {
+            return;
+        }
+
+        String indexName = indexName(tenant);
+
+        try {
+            Long rows = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM vector_store WHERE metadata->>'tenant' = ?", Long.class, tenant);
+            if (rows == null || rows < tenantIndexMinRows) {
+                return;
+            }
+
+            Map<String, Object> index = describe(indexName);
+
+            if (index != null) {
+                if (Boolean.TRUE.equals(index.get("valid")) && hasBuildOptions(index)) {
+                    return;
+                }
+
+                // Build anterior interrompido ou parâmetros alterados: buscas usam o índice global enquanto recria
+                log.info("Recriando índice HNSW do tenant {} ({} -> m={}, ef_construction={})",
+                        tenant, index.get("options"), m, efConstruction);
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+            }
+
+            log.info("Criando índice HNSW parcial {} para tenant {} ({} linhas)", indexName, tenant, rows);
+            build(indexName, "WHERE (metadata->>'tenant') = '" + tenant.replace("'", "''") + "'");
+
+        } catch (DataAccessException e) {
+            // Build concorrente do mesmo índice por outro job/nó: o próximo ensure valida o resultado
+            log.warn("Erro ao criar índice HNSW do tenant {}: {}", tenant, e.getMessage());
+        }
+    }
+
+    private void build(String indexName, String predicate) {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute(String.format("""
+                CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON vector_store
+                USING hnsw (%s) WITH (m = %d, ef_construction = %d)
+                %s
+                """, indexName, storageMode.indexDefinition(dimensions), m, efConstruction, predicate));
+
+        log.info("Índice {} ({}, m={}, ef_construction={}) criado em {} ms",
+                indexName, storageMode, m, efConstruction, System.currentTimeMillis() - start);
+    }
+
+    // reloptions ausentes = padrões do pgvector (m=16, ef_construction=64), como no índice criado pela V8
+    private boolean hasBuildOptions(Map<String, Object> index) {
+        int currentM = 16;
+        int currentEfConstruction = 64;
+
+        Object options = index.get("options");
+        if (options != null) {
+            for (String option : options.toString().split(",")) {
+                String[] pair = option.split("=", 2);
+                if (pair.length == 2 && pair[0].equals("m")) {
+                    currentM = Integer.parseInt(pair[1]);
+                } else if (pair.length == 2 && pair[0].equals("ef_construction")) {
+                    currentEfConstruction = Integer.parseInt(pair[1]);
+                }
+            }
+        }
+
+        return currentM == m && currentEfConstruction == efConstruction;
+    }
+
+    private boolean isValid(String indexName) {
+        Map<String, Object> index = describe(indexName);
+        return index != null && Boolean.TRUE.equals(index.get("valid"));
+    }
+
+    private Map<String, Object> describe(String indexName) {
+        List<Map<String, Object>> found = jdbcTemplate.queryForList("""
+                SELECT array_to_string(c.reloptions, ',') AS options, i.indisvalid AS valid
+                FROM pg_class c
+                JOIN pg_index i ON i.indexrelid = c.oid
+                WHERE c.relname = ?
+                """, indexName);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    // Nome derivado de hash (tenants podem conter caracteres inválidos em identificadores) e do modo
+    private String indexName(String tenant) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String hash = HexFormat.of().formatHex(digest.digest(tenant.getBytes(StandardCharsets.UTF_8)));
+            return "vector_store_hnsw_" + storageMode.indexSuffix() + hash.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.company.agent.infrastructure.ai;
+
+import com.pgvector.PGvector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Benchmark de recall/latência da busca ANN sobre os dados reais do tenant: usa embeddings
+// armazenados como consultas e compara com a busca exata (sem índice) para cada ef_search
+@Component
+@Slf4j
+public class VectorSearchBenchmark {
+
+    // Sem limite de similaridade: a comparação é só entre os rankings ANN e exato
+    private static final double NO_THRESHOLD = -1.0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgVectorSearch vectorSearch;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public VectorSearchBenchmark(JdbcTemplate jdbcTemplate,
+                                 PgVectorSearch vectorSearch,
+                                 PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.vectorSearch = vectorSearch;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public List<Result> run(String tenant, List<Integer> efSearchValues, int samples, int topK) {
+        List<float[]> queries = jdbcTemplate.query("""
+                SELECT embedding::text AS embedding FROM vector_store
+                WHERE metadata->>'tenant' = ?
+                ORDER BY random()
+                LIMIT ?
+                """, (rs, rowNum) -> toArray(rs.getString("embedding")), tenant, samples);
+
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum documento indexado para o tenant " + tenant);
+        }
+
+        List<Set<String>> groundTruth = queries.stream()
+                .map(query -> exactTopK(tenant, query, topK))
+                .toList();
+
+        List<Result> results = new ArrayList<>();
+        for (int efSearch : efSearchValues) {
+            long[] latencies = new long[queries.size()];
+            double recallSum = 0;
+
+            for (int i = 0; i < queries.size(); i++) {
+                long start = System.nanoTime();
+                List<Document> found = vectorSearch.search(tenant, queries.get(i), topK, NO_THRESHOLD, null, efSearch);
+                latencies[i] = System.nanoTime() - start;
+
+                Set<String> expected = groundTruth.get(i);
+                long hits = found.stream().filter(document -> expected.contains(document.getId())).count();
+                recallSum += expected.isEmpty() ? 1.0 : (double) hits / expected.size();
+            }
+
+            Arrays.sort(latencies);
+            Result result = new Result(efSearch, queries.size(), topK, recallSum / queries.size(),
+                    percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.95));
+            log.info("Benchmark HNSW tenant {}: {}", tenant, result);
+            results.add(result);
+        }
+
+        return results;
+    }
+
+    private Set<String> exactTopK(String tenant, float[] query, int topK) {
+        PGvector vector = new PGvector(query);
+
+        // Sem index scan o planner ordena todas as linhas do tenant: ranking exato (ground truth)
+        return readOnlyTransaction.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT set_config('enable_indexscan', 'off', true)", String.class);
+            return new HashSet<>(jdbcTemplate.queryForList("""
+                    SELECT id::text FROM vector_store
+                    WHERE metadata->>'tenant' = ?
+                    ORDER BY embedding <=> ?
+                    LIMIT ?
+                    """, String.class, tenant, vector, topK));
+        });
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static float[] toArray(String value) {
+        try {
+            return new PGvector(value).toArray();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Embedding inválido na vector_store", e);
+        }
+    }
+
+    public record Result(int efSearch, int samples, int topK, double recall, double p50Millis, double p95Millis) {}
+}
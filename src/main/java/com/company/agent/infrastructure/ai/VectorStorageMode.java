@@ -0,0 +1,42 @@
+package com.company.agent.infrastructure.ai;
+
+// Representação usada pelo índice HNSW na passagem ANN. Os vetores completos continuam na coluna
+// embedding (base do re-ranking); halfvec e binary são índices de expressão sobre ela (pgvector 0.7+)
+public enum VectorStorageMode {
+
+    FULL,       // vector(n) float32: sem re-ranking
+    HALFVEC,    // halfvec(n) float16: ~2x menos memória de índice
+    BINARY;     // bit(n) via binary_quantize: ~32x menos memória de índice, requer mais candidatos
+
+    public boolean isQuantized() {
+        return this != FULL;
+    }
+
+    // Expressão + operator class do índice HNSW
+    public String indexDefinition(int dimensions) {
+        return switch (this) {
+            case FULL -> "embedding vector_cosine_ops";
+            case HALFVEC -> String.format("(embedding::halfvec(%d)) halfvec_cosine_ops", dimensions);
+            case BINARY -> String.format("(binary_quantize(embedding)::bit(%d)) bit_hamming_ops", dimensions);
+        };
+    }
+
+    // Expressão de ordenação da passagem ANN (mesma do índice, para que o planner o utilize); '?' é o vetor da consulta
+    public String annDistance(int dimensions) {
+        return switch (this) {
+            case FULL -> "embedding <=> ?";
+            case HALFVEC -> String.format("embedding::halfvec(%1$d) <=> CAST(? AS halfvec(%1$d))", dimensions);
+            case BINARY -> String.format(
+                    "binary_quantize(embedding)::bit(%1$d) <~> binary_quantize(CAST(? AS vector(%1$d)))::bit(%1$d)",
+                    dimensions);
+        };
+    }
+
+    public String indexSuffix() {
+        return switch (this) {
+            case FULL -> "";
+            case HALFVEC -> "half_";
+            case BINARY -> "bit_";
+        };
+    }
+}
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.PgVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -15,13 +16,24 @@ public class VectorStoreConfig {
     private final EmbeddingModel embeddingModel;
     private final JdbcTemplate jdbcTemplate;
 
+    // full | halfvec | binary: representação do índice ANN (ver VectorStorageMode)
+    @Value("${agent.rag.storage.mode:full}")
+    private String storageMode;
+
     @Bean
     public VectorStore vectorStore() {
+        // Schema (tabela e índices HNSW) gerenciado pelas migrations e pelo VectorIndexManager:
+        // com initializeSchema o PgVectorStore recriaria o índice float32 a cada startup
         return new PgVectorStore.Builder(jdbcTemplate, embeddingModel)
                 .withSchemaName("public")
                 .withVectorTableName("vector_store")
                 .withSchemaValidation(true)
-                .withInitializeSchema(true)
+                .withInitializeSchema(false)
                 .build();
     }
+
+    @Bean
+    public VectorStorageMode vectorStorageMode() {
+        return VectorStorageMode.valueOf(storageMode.trim().toUpperCase());
+    }
 }
@@ -0,0 +1,103 @@
+package com.company.agent.infrastructure.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Gravação em lote (JDBC batch) de chunks já embedados na tabela vector_store
+@Component
+@RequiredArgsConstructor
+public class VectorStoreWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void write(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Quantidade de documentos e embeddings diferente");
+        }
+
+        List<Object[]> batch = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            batch.add(new Object[]{
+                    UUID.fromString(document.getId()),
+                    document.getContent(),
+                    toJson(document),
+                    new PGvector(embeddings.get(i))
+            });
+        }
+
+        // Ids determinísticos + ON CONFLICT: reprocessar um trecho após falha não duplica chunks
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO vector_store (id, content, metadata, embedding)
+                VALUES (?, ?, ?::json, ?)
+                ON CONFLICT (id) DO NOTHING
+                """, batch);
+    }
+
+    // Ids (dentre os informados) que já existem na vector_store
+    public Set<String> findExisting(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+
+        List<String> found = namedJdbcTemplate.queryForList(
+                "SELECT id::text FROM vector_store WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids.stream().map(UUID::fromString).toList()),
+                String.class);
+        return new HashSet<>(found);
+    }
+
+    // Chunks inalterados (mesmo id = mesmo conteúdo na fonte) são marcados como vistos pelo job atual e
+    // recebem os metadados desta ingestão: reingerir a fonte em outra fase ou com outra divisão em
+    // unidades atualiza 'phase'/'unit' sem novo embedding, e os filtros do RAG continuam enxergando o chunk
+    public int markSeen(Collection<Document> documents) {
+        if (documents.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> batch = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            batch.add(new Object[]{toJson(document), UUID.fromString(document.getId())});
+        }
+
+        int updated = 0;
+        for (int rows : jdbcTemplate.batchUpdate("UPDATE vector_store SET metadata = ?::json WHERE id = ?", batch)) {
+            updated += Math.max(rows, 0);
+        }
+        return updated;
+    }
+
+    // Remove os chunks da fonte não vistos pelo job: conteúdo alterado ou removido na nova versão
+    public int deleteOrphans(String tenant, String source, UUID jobId) {
+        return jdbcTemplate.update("""
+                DELETE FROM vector_store
+                WHERE metadata->>'tenant' = ?
+                  AND metadata->>'source' = ?
+                  AND (metadata->>'ingestion_job') IS DISTINCT FROM ?
+                """, tenant, source, jobId.toString());
+    }
+
+    private String toJson(Document document) {
+        try {
+            return objectMapper.writeValueAsString(document.getMetadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Metadados inválidos no documento " + document.getId(), e);
+        }
+    }
+}
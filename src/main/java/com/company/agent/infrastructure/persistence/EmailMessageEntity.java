@@ -0,0 +1,120 @@
+package com.company.agent.infrastructure.persistence;
+
+import com.company.agent.domain.EmailMessage;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "email_outbox", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"tenant", "idempotency_key"})
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailMessageEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false, length = 100)
+    private String tenant;
+
+    @Column(name = "idempotency_key", nullable = false, length = 200)
+    private String idempotencyKey;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "recipients", nullable = false, columnDefinition = "jsonb")
+    private List<String> to;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "cc", columnDefinition = "jsonb")
+    private List<String> cc;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "bcc", columnDefinition = "jsonb")
+    private List<String> bcc;
+
+    @Column(nullable = false, length = 1000)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EmailMessage.Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    // Conversion methods
+    public EmailMessage toDomain() {
+        return EmailMessage.builder()
+                .id(this.id)
+                .tenant(this.tenant)
+                .idempotencyKey(this.idempotencyKey)
+                .to(this.to)
+                .cc(this.cc)
+                .bcc(this.bcc)
+                .subject(this.subject)
+                .body(this.body)
+                .status(this.status)
+                .attempts(this.attempts)
+                .nextAttemptAt(this.nextAttemptAt)
+                .lastError(this.lastError)
+                .createdAt(this.createdAt)
+                .updatedAt(this.updatedAt)
+                .sentAt(this.sentAt)
+                .build();
+    }
+
+    public static EmailMessageEntity fromDomain(EmailMessage message) {
+        return EmailMessageEntity.builder()
+                .id(message.getId())
+                .tenant(message.getTenant())
+                .idempotencyKey(message.getIdempotencyKey())
+                .to(message.getTo())
+                .cc(message.getCc())
+                .bcc(message.getBcc())
+                .subject(message.getSubject())
+                .body(message.getBody())
+                .status(message.getStatus())
+                .attempts(message.getAttempts())
+                .nextAttemptAt(message.getNextAttemptAt())
+                .lastError(message.getLastError())
+                .createdAt(message.getCreatedAt())
+                .updatedAt(message.getUpdatedAt())
+                .sentAt(message.getSentAt())
+                .build();
+    }
+}
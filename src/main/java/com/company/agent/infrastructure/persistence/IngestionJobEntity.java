@@ -0,0 +1,127 @@
+package com.company.agent.infrastructure.persistence;
+
+import com.company.agent.domain.IngestionJob;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "ingestion_jobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionJobEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false, length = 100)
+    private String tenant;
+
+    @Column(nullable = false, length = 100)
+    private String phase;
+
+    @Column(name = "source_id", nullable = false, length = 500)
+    private String sourceId;
+
+    @Column(name = "file_name", length = 500)
+    private String fileName;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(name = "spool_path", nullable = false, columnDefinition = "TEXT")
+    private String spoolPath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private IngestionJob.Status status;
+
+    @Column(name = "total_units")
+    private Integer totalUnits;
+
+    @Column(name = "processed_units", nullable = false)
+    private int processedUnits;
+
+    @Column(name = "chunks_written", nullable = false)
+    private long chunksWritten;
+
+    @Column(name = "chunks_unchanged", nullable = false)
+    private long chunksUnchanged;
+
+    @Column(name = "chunks_deleted", nullable = false)
+    private long chunksDeleted;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Conversion methods
+    public IngestionJob toDomain() {
+        return IngestionJob.builder()
+                .id(this.id)
+                .tenant(this.tenant)
+                .phase(this.phase)
+                .sourceId(this.sourceId)
+                .fileName(this.fileName)
+                .contentType(this.contentType)
+                .spoolPath(this.spoolPath)
+                .status(this.status)
+                .totalUnits(this.totalUnits)
+                .processedUnits(this.processedUnits)
+                .chunksWritten(this.chunksWritten)
+                .chunksUnchanged(this.chunksUnchanged)
+                .chunksDeleted(this.chunksDeleted)
+                .errorMessage(this.errorMessage)
+                .createdAt(this.createdAt)
+                .updatedAt(this.updatedAt)
+                .startedAt(this.startedAt)
+                .completedAt(this.completedAt)
+                .build();
+    }
+
+    public static IngestionJobEntity fromDomain(IngestionJob job) {
+        return IngestionJobEntity.builder()
+                .id(job.getId())
+                .tenant(job.getTenant())
+                .phase(job.getPhase())
+                .sourceId(job.getSourceId())
+                .fileName(job.getFileName())
+                .contentType(job.getContentType())
+                .spoolPath(job.getSpoolPath())
+                .status(job.getStatus())
+                .totalUnits(job.getTotalUnits())
+                .processedUnits(job.getProcessedUnits())
+                .chunksWritten(job.getChunksWritten())
+                .chunksUnchanged(job.getChunksUnchanged())
+                .chunksDeleted(job.getChunksDeleted())
+                .errorMessage(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .startedAt(job.getStartedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.company.agent.infrastructure.persistence;
+
+import com.company.agent.domain.EmailMessage;
+import com.company.agent.domain.EmailMessageRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class JpaEmailMessageRepository implements EmailMessageRepository {
+
+    private final SpringDataEmailMessageRepository springDataRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional
+    public boolean enqueue(EmailMessage message) {
+        // Um único INSERT ... ON CONFLICT DO NOTHING: deduplicação atômica, sem SELECT antes
+        return springDataRepository.insertIfAbsent(
+                message.getTenant(),
+                message.getIdempotencyKey(),
+                toJson(message.getTo()),
+                toJson(message.getCc()),
+                toJson(message.getBcc()),
+                message.getSubject(),
+                message.getBody()) > 0;
+    }
+
+    @Override
+    public EmailMessage save(EmailMessage message) {
+        EmailMessageEntity entity = EmailMessageEntity.fromDomain(message);
+        EmailMessageEntity saved = springDataRepository.save(entity);
+        return saved.toDomain();
+    }
+
+    @Override
+    public List<EmailMessage> lockNextDue(int limit) {
+        return springDataRepository.lockNextDue(limit)
+                .stream()
+                .map(EmailMessageEntity::toDomain)
+                .toList();
+    }
+
+    @Override
+    public int requeueSendingUpdatedBefore(LocalDateTime cutoff) {
+        return springDataRepository.requeueSendingUpdatedBefore(cutoff);
+    }
+
+    @Override
+    public int deleteFinishedUpdatedBefore(LocalDateTime cutoff) {
+        return springDataRepository.deleteFinishedUpdatedBefore(cutoff);
+    }
+
+    private String toJson(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+
+        try {
+            return objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Destinatários inválidos: " + e.getMessage(), e);
+        }
+    }
+
+    // Spring Data JPA Repository Interface
+    interface SpringDataEmailMessageRepository extends JpaRepository<EmailMessageEntity, UUID> {
+
+        @Modifying
+        @Query(value = "INSERT INTO email_outbox (tenant, idempotency_key, recipients, cc, bcc, subject, body) " +
+                "VALUES (:tenant, :idempotencyKey, CAST(:recipients AS jsonb), CAST(:cc AS jsonb), " +
+                "CAST(:bcc AS jsonb), :subject, :body) " +
+                "ON CONFLICT (tenant, idempotency_key) DO NOTHING", nativeQuery = true)
+        int insertIfAbsent(@Param("tenant") String tenant,
+                           @Param("idempotencyKey") String idempotencyKey,
+                           @Param("recipients") String recipients,
+                           @Param("cc") String cc,
+                           @Param("bcc") String bcc,
+                           @Param("subject") String subject,
+                           @Param("body") String body);
+
+        @Query(value = "SELECT * FROM email_outbox WHERE status = 'PENDING' AND next_attempt_at <= now() " +
+                "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+        List<EmailMessageEntity> lockNextDue(@Param("limit") int limit);
+
+        @Modifying
+        @Query(value = "UPDATE email_outbox SET status = 'PENDING', next_attempt_at = now() " +
+                "WHERE status = 'SENDING' AND updated_at < :cutoff", nativeQuery = true)
+        int requeueSendingUpdatedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+        @Modifying
+        @Query(value = "DELETE FROM email_outbox WHERE status IN ('SENT', 'FAILED') AND updated_at < :cutoff",
+                nativeQuery = true)
+        int deleteFinishedUpdatedBefore(@Param("cutoff") LocalDateTime cutoff);
+    }
+}
@@ -0,0 +1,62 @@
+package com.company.agent.infrastructure.persistence;
+
+import com.company.agent.domain.IngestionJob;
+import com.company.agent.domain.IngestionJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class JpaIngestionJobRepository implements IngestionJobRepository {
+
+    private final SpringDataIngestionJobRepository springDataRepository;
+
+    @Override
+    public IngestionJob save(IngestionJob job) {
+        IngestionJobEntity entity = IngestionJobEntity.fromDomain(job);
+        IngestionJobEntity saved = springDataRepository.save(entity);
+        return saved.toDomain();
+    }
+
+    @Override
+    public Optional<IngestionJob> findById(UUID id) {
+        return springDataRepository.findById(id)
+                .map(IngestionJobEntity::toDomain);
+    }
+
+    @Override
+    public List<IngestionJob> findByTenant(String tenant) {
+        return springDataRepository.findByTenantOrderByCreatedAtDesc(tenant)
+                .stream()
+                .map(IngestionJobEntity::toDomain)
+                .toList();
+    }
+
+    @Override
+    public List<IngestionJob> findByStatusIn(List<IngestionJob.Status> statuses) {
+        return springDataRepository.findByStatusInOrderByCreatedAtAsc(statuses)
+                .stream()
+                .map(IngestionJobEntity::toDomain)
+                .toList();
+    }
+
+    @Override
+    public boolean existsBySource(String tenant, String sourceId, List<IngestionJob.Status> statuses) {
+        return springDataRepository.existsByTenantAndSourceIdAndStatusIn(tenant, sourceId, statuses);
+    }
+
+    // Spring Data JPA Repository Interface
+    interface SpringDataIngestionJobRepository extends JpaRepository<IngestionJobEntity, UUID> {
+
+        List<IngestionJobEntity> findByTenantOrderByCreatedAtDesc(String tenant);
+
+        List<IngestionJobEntity> findByStatusInOrderByCreatedAtAsc(List<IngestionJob.Status> statuses);
+
+        boolean existsByTenantAndSourceIdAndStatusIn(String tenant, String sourceId, List<IngestionJob.Status> statuses);
+    }
+}
@@ -4,10 +4,13 @@ import com.company.agent.domain.Task;
 import com.company.agent.domain.TaskRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -55,6 +58,40 @@ public class JpaTaskRepository implements TaskRepository {
                 .toList();
     }
 
+    @Override
+    public List<Task> lockNextPending(int limit) {
+        return springDataRepository.lockNextPending(limit)
+                .stream()
+                .map(TaskEntity::toDomain)
+                .toList();
+    }
+
+    @Override
+    public Optional<Task> lockPendingById(UUID id) {
+        return springDataRepository.lockPendingById(id)
+                .map(TaskEntity::toDomain);
+    }
+
+    @Override
+    public long countByStatus(Task.Status status) {
+        return springDataRepository.countByStatus(status);
+    }
+
+    @Override
+    public int acquireLeases(Collection<UUID> ids, String owner, LocalDateTime expiresAt) {
+        return ids.isEmpty() ? 0 : springDataRepository.acquireLeases(ids, owner, expiresAt);
+    }
+
+    @Override
+    public int renewLeases(Collection<UUID> ids, String owner, LocalDateTime expiresAt) {
+        return ids.isEmpty() ? 0 : springDataRepository.renewLeases(ids, owner, expiresAt);
+    }
+
+    @Override
+    public int requeueExpiredLeases(LocalDateTime now, LocalDateTime unleasedCutoff) {
+        return springDataRepository.requeueExpiredLeases(now, unleasedCutoff);
+    }
+
     @Override
     public void deleteById(UUID id) {
         springDataRepository.deleteById(id);
@@ -76,5 +113,38 @@ public class JpaTaskRepository implements TaskRepository {
 
         @Query("SELECT t FROM TaskEntity t WHERE t.tenant = :tenant AND t.status = 'RUNNING'")
         List<TaskEntity> findRunningTasksByTenant(@Param("tenant") String tenant);
+
+        long countByStatus(Task.Status status);
+
+        @Query(value = "SELECT * FROM tasks WHERE status = 'PENDING' ORDER BY created_at " +
+                "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+        List<TaskEntity> lockNextPending(@Param("limit") int limit);
+
+        @Query(value = "SELECT * FROM tasks WHERE id = :id AND status = 'PENDING' " +
+                "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+        Optional<TaskEntity> lockPendingById(@Param("id") UUID id);
+
+        // Colunas de lease não são mapeadas na entidade: saves da task não sobrescrevem o heartbeat
+        @Modifying(flushAutomatically = true)
+        @Query(value = "UPDATE tasks SET lease_owner = :owner, lease_expires_at = :expiresAt " +
+                "WHERE id IN (:ids)", nativeQuery = true)
+        int acquireLeases(@Param("ids") Collection<UUID> ids,
+                          @Param("owner") String owner,
+                          @Param("expiresAt") LocalDateTime expiresAt);
+
+        @Modifying
+        @Query(value = "UPDATE tasks SET lease_expires_at = :expiresAt " +
+                "WHERE id IN (:ids) AND status = 'RUNNING' AND lease_owner = :owner", nativeQuery = true)
+        int renewLeases(@Param("ids") Collection<UUID> ids,
+                        @Param("owner") String owner,
+                        @Param("expiresAt") LocalDateTime expiresAt);
+
+        @Modifying
+        @Query(value = "UPDATE tasks SET status = 'PENDING', started_at = NULL, " +
+                "lease_owner = NULL, lease_expires_at = NULL, updated_at = :now " +
+                "WHERE status = 'RUNNING' AND (lease_expires_at < :now " +
+                "OR (lease_expires_at IS NULL AND started_at < :unleasedCutoff))", nativeQuery = true)
+        int requeueExpiredLeases(@Param("now") LocalDateTime now,
+                                 @Param("unleasedCutoff") LocalDateTime unleasedCutoff);
     }
 }
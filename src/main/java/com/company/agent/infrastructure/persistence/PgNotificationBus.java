@@ -0,0 +1,138 @@
+package com.company.agent.infrastructure.persistence;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Barramento de notificações entre nós via Postgres LISTEN/NOTIFY
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PgNotificationBus implements DisposableBean {
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    @Value("${agent.notify.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.notify.poll-timeout:PT5S}")
+    private Duration pollTimeout;
+
+    public void publish(String channel, String payload) {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("SELECT pg_notify(?, ?)", (PreparedStatementCallback<Boolean>) ps -> {
+                ps.setString(1, channel);
+                ps.setString(2, payload);
+                return ps.execute();
+            });
+        } catch (Exception e) {
+            log.warn("Erro ao publicar notificação no canal {}: {}", channel, e.getMessage());
+        }
+    }
+
+    public synchronized void subscribe(String channel, Consumer<String> handler) {
+        subscribers.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>()).add(handler);
+
+        if (enabled && listenerThread == null) {
+            running = true;
+            listenerThread = Thread.ofPlatform()
+                    .name("pg-notify-listener")
+                    .daemon(true)
+                    .start(this::listen);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            // Conexão dedicada enquanto o listener estiver ativo
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                Set<String> listening = new HashSet<>();
+
+                while (running) {
+                    listenNewChannels(connection, listening);
+
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeout.toMillis());
+                    if (notifications == null) {
+                        continue;
+                    }
+
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getName(), notification.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Listener de notificações desconectado, reconectando: {}", e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void listenNewChannels(Connection connection, Set<String> listening) throws Exception {
+        for (String channel : subscribers.keySet()) {
+            if (listening.add(channel)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                log.debug("Escutando canal de notificações {}", channel);
+            }
+        }
+    }
+
+    private void dispatch(String channel, String payload) {
+        for (Consumer<String> handler : subscribers.getOrDefault(channel, List.of())) {
+            try {
+                handler.accept(payload);
+            } catch (Exception e) {
+                log.warn("Erro ao processar notificação do canal {}: {}", channel, e.getMessage());
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(pollTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
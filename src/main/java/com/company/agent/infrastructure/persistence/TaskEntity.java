@@ -61,6 +61,15 @@ public class TaskEntity {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
+    @Column(name = "prompt_tokens")
+    private Integer promptTokens;
+
+    @Column(name = "context_tokens")
+    private Integer contextTokens;
+
+    @Column(name = "completion_tokens")
+    private Integer completionTokens;
+
     // Conversion methods
     public Task toDomain() {
         return Task.builder()
@@ -76,6 +85,9 @@ public class TaskEntity {
                 .updatedAt(this.updatedAt)
                 .startedAt(this.startedAt)
                 .completedAt(this.completedAt)
+                .promptTokens(this.promptTokens)
+                .contextTokens(this.contextTokens)
+                .completionTokens(this.completionTokens)
                 .build();
     }
 
@@ -93,6 +105,9 @@ public class TaskEntity {
                 .updatedAt(task.getUpdatedAt())
                 .startedAt(task.getStartedAt())
                 .completedAt(task.getCompletedAt())
+                .promptTokens(task.getPromptTokens())
+                .contextTokens(task.getContextTokens())
+                .completionTokens(task.getCompletionTokens())
                 .build();
     }
 }
\ No newline at end of file
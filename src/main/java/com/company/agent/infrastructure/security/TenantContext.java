@@ -2,10 +2,14 @@ package com.company.agent.infrastructure.security;
 
 import org.springframework.stereotype.Component;
 
+import java.util.UUID;
+
 @Component
 public class TenantContext {
 
     private static final ThreadLocal<String> CURRENT_TENANT = new ThreadLocal<>();
+    // Task em execução (definida pelo orquestrador): tools usam para escopar efeitos como a idempotência de emails
+    private static final ThreadLocal<UUID> CURRENT_TASK = new ThreadLocal<>();
 
     public void setCurrentTenant(String tenant) {
         CURRENT_TENANT.set(tenant);
@@ -19,8 +23,22 @@ public class TenantContext {
         return tenant;
     }
 
+    public void setCurrentTask(UUID taskId) {
+        CURRENT_TASK.set(taskId);
+    }
+
+    // null fora da execução de uma task
+    public UUID getCurrentTask() {
+        return CURRENT_TASK.get();
+    }
+
+    public void clearTask() {
+        CURRENT_TASK.remove();
+    }
+
     public void clear() {
         CURRENT_TENANT.remove();
+        CURRENT_TASK.remove();
     }
 
     public boolean hasTenant() {
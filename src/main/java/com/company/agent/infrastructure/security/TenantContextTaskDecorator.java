@@ -0,0 +1,35 @@
+package com.company.agent.infrastructure.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+public class TenantContextTaskDecorator implements TaskDecorator {
+
+    private final TenantContext tenantContext;
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        // Capturar o tenant (e a task) na thread que submete e restaurar na thread que executa
+        String tenant = tenantContext.hasTenant() ? tenantContext.getCurrentTenant() : null;
+        UUID taskId = tenantContext.getCurrentTask();
+
+        return () -> {
+            if (tenant != null) {
+                tenantContext.setCurrentTenant(tenant);
+            }
+            if (taskId != null) {
+                tenantContext.setCurrentTask(taskId);
+            }
+            try {
+                runnable.run();
+            } finally {
+                tenantContext.clear();
+            }
+        };
+    }
+}
@@ -1,81 +1,334 @@
 package com.company.agent.infrastructure.tools;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Function;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class DatabaseTool implements Function<DatabaseTool.Request, DatabaseTool.Response> {
 
-    private final JdbcTemplate jdbcTemplate;
+    private final ToolDataSources dataSources;
+    private final QueryValidator queryValidator;
+    private final ObjectMapper objectMapper;
+    private final TokenCountEstimator tokenCounter = new JTokkitTokenCountEstimator();
+
+    // Datasource definido pela política da fase (chave 'datasource'); por padrão o pool somente leitura da aplicação
+    private String dataSourceName = ToolDataSources.DEFAULT;
+
+    // Linhas trazidas do servidor por round trip (no Postgres só vale dentro de transação)
+    @Value("${agent.tools.database.fetch-size:200}")
+    private int fetchSize;
+
+    @Value("${agent.tools.database.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${agent.tools.database.max-page-size:1000}")
+    private int maxPageSize;
+
+    // Orçamento de tokens do resultado devolvido ao modelo; o restante fica para a próxima página
+    @Value("${agent.tools.database.max-result-tokens:4000}")
+    private int maxResultTokens;
+
+    // Cada célula é limitada antes da contagem de tokens: um único TEXT/CLOB enorme não estoura o orçamento
+    @Value("${agent.tools.database.max-cell-chars:2000}")
+    private int maxCellChars;
+
+    public DatabaseTool(ToolDataSources dataSources, QueryValidator queryValidator, ObjectMapper objectMapper) {
+        this.dataSources = dataSources;
+        this.queryValidator = queryValidator;
+        this.objectMapper = objectMapper;
+    }
 
     @Override
     public Response apply(Request request) {
-        log.info("Executando query: {}", request.query().substring(0, Math.min(100, request.query().length())));
+        log.info("Executando query em {}: {}", dataSourceName,
+                request.query().substring(0, Math.min(100, request.query().length())));
 
         try {
-            // Validar query para evitar operações perigosas
-            validateQuery(request.query());
+            // Validar query para evitar operações perigosas (resultado cacheado por texto de query)
+            QueryValidator.ValidatedQuery query = queryValidator.validate(request.query());
+            List<Object> parameters = request.parameters() != null ? request.parameters() : List.of();
 
-            if (isSelectQuery(request.query())) {
-                List<Map<String, Object>> results = jdbcTemplate.queryForList(request.query());
+            if (parameters.size() != query.parameterCount()) {
+                return new Response(false, String.format("A query tem %d parâmetros '?' mas foram informados %d",
+                        query.parameterCount(), parameters.size()), null, null, null);
+            }
 
-                return new Response(true,
-                        "Query executada com sucesso. Retornadas " + results.size() + " linhas",
-                        results);
+            ToolDataSources.Target target = dataSources.get(dataSourceName);
+
+            if (query.kind() == QueryValidator.Kind.SELECT) {
+                return select(target, query, parameters, request);
             } else {
-                int rowsAffected = jdbcTemplate.update(request.query());
+                if (target.readOnly()) {
+                    return new Response(false, "Datasource " + target.name() + " é somente leitura", null, null, null);
+                }
+
+                int rowsAffected = target.execute(jdbc -> jdbc.update(con -> {
+                    PreparedStatement statement = con.prepareStatement(query.sql());
+                    statement.setQueryTimeout(target.queryTimeoutSeconds());
+                    bind(statement, parameters);
+                    return statement;
+                }));
 
                 return new Response(true,
                         "Query executada com sucesso. " + rowsAffected + " linhas afetadas",
-                        List.of(Map.of("rowsAffected", rowsAffected)));
+                        List.of("rowsAffected"), List.of(List.<Object>of(rowsAffected)), null);
             }
 
         } catch (Exception e) {
             log.error("Erro na execução da query: {}", e.getMessage(), e);
-            return new Response(false, "Erro na execução: " + e.getMessage(), null);
+            return new Response(false, "Erro na execução: " + e.getMessage(), null, null, null);
+        }
+    }
+
+    // Página lida em streaming (fetch size, max rows) e codificada em colunas: nomes uma vez, linhas como arrays
+    private Response select(ToolDataSources.Target target, QueryValidator.ValidatedQuery query,
+                            List<Object> parameters, Request request) {
+        long offset = request.cursor() != null ? decodeCursor(request.cursor(), continuationKey(query, parameters)) : 0;
+        int pageSize = Math.min(request.pageSize() != null && request.pageSize() > 0 ? request.pageSize() : defaultPageSize,
+                maxPageSize);
+
+        // Em transação (fetch size efetivo no Postgres), com timeout de statement e limite do datasource;
+        // offset/limite também são parâmetros, então todas as páginas reutilizam o mesmo plano
+        Page page = target.execute(jdbc -> jdbc.query(con -> {
+            PreparedStatement statement = con.prepareStatement(query.pagedSql(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Math.min(fetchSize, pageSize + 1));
+            statement.setMaxRows(pageSize + 1);
+            statement.setQueryTimeout(target.queryTimeoutSeconds());
+            bind(statement, parameters);
+            statement.setLong(parameters.size() + 1, offset);
+            statement.setInt(parameters.size() + 2, pageSize + 1);
+            return statement;
+        }, rs -> readPage(rs, pageSize)));
+
+        long nextOffset = offset + page.rows().size();
+        String nextCursor = page.hasMore() ? encodeCursor(nextOffset, continuationKey(query, parameters)) : null;
+
+        String message = "Query executada com sucesso. Retornadas " + page.rows().size() + " linhas (a partir da "
+                + (offset + 1) + ")";
+        if (page.truncatedByBudget()) {
+            message += "; resultado limitado a " + maxResultTokens + " tokens";
+        }
+        if (nextCursor != null) {
+            message += ". Há mais linhas: repita a mesma query e parâmetros com cursor=" + nextCursor;
+            if (!query.ordered()) {
+                // Paginação por OFFSET sem ordem definida: o banco pode devolver as linhas em outra ordem a cada página
+                message += ". A query não tem ORDER BY: as próximas páginas podem repetir ou omitir linhas; "
+                        + "para paginar com segurança, refaça a query com ORDER BY por uma chave única";
+            }
         }
+
+        return new Response(true, message, page.columns(), page.rows(), nextCursor);
     }
 
-    private void validateQuery(String query) {
-        String upperQuery = query.trim().toUpperCase();
+    private Page readPage(ResultSet rs, int pageSize) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
 
-        // Lista de comandos perigosos não permitidos
-        List<String> forbidden = List.of(
-                "DROP", "TRUNCATE", "ALTER", "CREATE",
-                "GRANT", "REVOKE", "EXEC", "EXECUTE"
-        );
+        List<String> columns = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(JdbcUtils.lookupColumnName(metaData, i));
+        }
 
-        for (String cmd : forbidden) {
-            if (upperQuery.startsWith(cmd + " ")) {
-                throw new SecurityException("Comando não permitido: " + cmd);
+        int tokens = countTokens(columns);
+        List<List<Object>> rows = new ArrayList<>();
+
+        while (rs.next()) {
+            if (rows.size() == pageSize) {
+                return new Page(columns, rows, true, false);
+            }
+
+            List<Object> row = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                row.add(readCell(rs, i, metaData.getColumnType(i)));
+            }
+
+            // Sempre ao menos uma linha por página, para a paginação progredir
+            tokens += countTokens(row);
+            if (tokens > maxResultTokens && !rows.isEmpty()) {
+                return new Page(columns, rows, true, true);
+            }
+            rows.add(row);
+        }
+
+        return new Page(columns, rows, false, false);
+    }
+
+    // LOBs lidos só até o limite da célula (sem materializar o conteúdo inteiro)
+    private Object readCell(ResultSet rs, int index, int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.CLOB, Types.NCLOB, Types.LONGVARCHAR, Types.LONGNVARCHAR -> {
+                try (Reader reader = rs.getCharacterStream(index)) {
+                    if (reader == null) {
+                        return null;
+                    }
+                    char[] buffer = new char[maxCellChars + 1];
+                    int read = 0;
+                    int n;
+                    while (read < buffer.length && (n = reader.read(buffer, read, buffer.length - read)) > 0) {
+                        read += n;
+                    }
+                    return read > maxCellChars
+                            ? new String(buffer, 0, maxCellChars) + "… [truncado em " + maxCellChars + " caracteres]"
+                            : new String(buffer, 0, read);
+                } catch (IOException e) {
+                    throw new SQLException("Erro ao ler a coluna " + index + ": " + e.getMessage(), e);
+                }
+            }
+            case Types.BLOB -> {
+                Blob blob = rs.getBlob(index);
+                if (blob == null) {
+                    return null;
+                }
+                try {
+                    return "<binário " + blob.length() + " bytes>";
+                } finally {
+                    blob.free();
+                }
+            }
+            default -> {
+                return toJsonValue(JdbcUtils.getResultSetValue(rs, index));
             }
         }
+    }
+
+    private Object toJsonValue(Object value) {
+        if (value instanceof String text) {
+            return truncate(text);
+        }
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Temporal) {
+            return value;
+        }
+        // java.sql.Date/Time não suportam toInstant(): converter para os tipos java.time equivalentes
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        if (value instanceof java.sql.Time time) {
+            return time.toLocalTime();
+        }
+        if (value instanceof byte[] bytes) {
+            return "<binário " + bytes.length + " bytes>";
+        }
+        // json, arrays, tipos do driver: representação textual, também limitada
+        return truncate(value.toString());
+    }
+
+    private String truncate(String text) {
+        if (text.length() <= maxCellChars) {
+            return text;
+        }
+        return text.substring(0, maxCellChars) + "… [truncado em " + maxCellChars + " de " + text.length() + " caracteres]";
+    }
+
+    private int countTokens(List<?> values) {
+        try {
+            return tokenCounter.estimate(objectMapper.writeValueAsString(values));
+        } catch (JsonProcessingException e) {
+            return tokenCounter.estimate(values.toString());
+        }
+    }
+
+    // Valores vindos do JSON do modelo (texto, número, booleano, null): nunca concatenados ao SQL
+    private void bind(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+    }
 
-        // Apenas permitir SELECT, INSERT, UPDATE, DELETE em tabelas específicas
-        if (!upperQuery.matches("^(SELECT|INSERT|UPDATE|DELETE)\\s+.*")) {
-            throw new SecurityException("Apenas SELECT, INSERT, UPDATE e DELETE são permitidos");
+    // Query + parâmetros: o cursor de uma consulta não pode ser reaproveitado com outros valores
+    private String continuationKey(QueryValidator.ValidatedQuery query, List<Object> parameters) {
+        if (parameters.isEmpty()) {
+            return query.hash();
+        }
+
+        try {
+            return hash(query.hash() + objectMapper.writeValueAsString(parameters));
+        } catch (JsonProcessingException e) {
+            return hash(query.hash() + parameters);
         }
     }
 
-    private boolean isSelectQuery(String query) {
-        return query.trim().toUpperCase().startsWith("SELECT");
+    // Cursor opaco: offset + hash da query (a continuação só vale para a mesma query)
+    private String encodeCursor(long offset, String queryHash) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((offset + ":" + queryHash).getBytes(StandardCharsets.UTF_8));
     }
 
+    private long decodeCursor(String cursor, String queryHash) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+            if (parts.length != 2 || !parts[1].equals(queryHash)) {
+                throw new IllegalArgumentException("Cursor não pertence a esta query");
+            }
+            return Long.parseLong(parts[0]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + e.getMessage());
+        }
+    }
+
+    public DatabaseTool withDataSource(String name) {
+        DatabaseTool newTool = new DatabaseTool(dataSources, queryValidator, objectMapper);
+        newTool.dataSourceName = name;
+        newTool.fetchSize = fetchSize;
+        newTool.defaultPageSize = defaultPageSize;
+        newTool.maxPageSize = maxPageSize;
+        newTool.maxResultTokens = maxResultTokens;
+        newTool.maxCellChars = maxCellChars;
+        return newTool;
+    }
+
+    private static String hash(String query) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(query.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private record Page(List<String> columns, List<List<Object>> rows, boolean hasMore, boolean truncatedByBudget) {}
+
     public record Request(
-            String query
+            String query,               // Valores via placeholders '?', na ordem de parameters
+            List<Object> parameters,
+            String cursor,              // Continuação devolvida em nextCursor (mesma query e parâmetros)
+            Integer pageSize
     ) {}
 
+    // Resultado em colunas: nomes uma única vez e cada linha como array na mesma ordem
     public record Response(
             boolean success,
             String message,
-            List<Map<String, Object>> data
+            List<String> columns,
+            List<List<Object>> rows,
+            String nextCursor
     ) {}
 }
@@ -0,0 +1,226 @@
+package com.company.agent.infrastructure.tools;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Allowlist de domínios compilada uma única vez. Padrões aceitos:
+//   https://api.github.com        host exato (porta padrão do esquema)
+//   https://*.example.com         qualquer subdomínio (não inclui o próprio example.com)
+//   http://localhost:8080         porta explícita
+//   https://api.example.com/v1    prefixo de caminho (/v1 e /v1/..., não /v10)
+//   api.example.com               sem esquema: http ou https
+// Caminhos ambíguos (segmentos '.' e '..', pontos ou barras codificados) são recusados: o servidor
+// resolveria /v1/../admin ou /v1/%2e%2e/admin para fora do prefixo permitido. O match não aloca
+// (comparações in-place no host e no caminho bruto); quem envia a requisição deve normalizar o URI
+// antes, para que caminhos como /v1/./x não sejam recusados (ver HttpTool)
+public final class DomainMatcher {
+
+    private static final DomainMatcher DENY_ALL = new DomainMatcher(new TreeMap<>(String.CASE_INSENSITIVE_ORDER), List.of());
+
+    // Hosts exatos (case-insensitive) e curingas testados por sufixo
+    private final Map<String, Rule[]> exactHosts;
+    private final Rule[] wildcards;
+
+    private DomainMatcher(TreeMap<String, Rule[]> exactHosts, List<Rule> wildcards) {
+        this.exactHosts = exactHosts;
+        this.wildcards = wildcards.toArray(Rule[]::new);
+    }
+
+    public static DomainMatcher compile(Collection<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return DENY_ALL;
+        }
+
+        Map<String, List<Rule>> exact = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<Rule> wildcards = new ArrayList<>();
+
+        for (String pattern : patterns) {
+            Rule rule = parse(pattern);
+            if (rule.hostSuffix() != null) {
+                wildcards.add(rule);
+            } else {
+                exact.computeIfAbsent(rule.host(), host -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        TreeMap<String, Rule[]> compiled = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        exact.forEach((host, rules) -> compiled.put(host, rules.toArray(Rule[]::new)));
+        return new DomainMatcher(compiled, wildcards);
+    }
+
+    public boolean matches(URI uri) {
+        return match(uri) != null;
+    }
+
+    // Padrão da allowlist (como configurado) que permite o URI, ou null; serve de tag de métricas
+    // com cardinalidade limitada à allowlist
+    public String match(URI uri) {
+        String host = uri.getHost();
+        String scheme = uri.getScheme();
+        if (host == null || scheme == null) {
+            return null;
+        }
+
+        String rawPath = uri.getRawPath();
+        if (!isSafePath(rawPath)) {
+            return null;
+        }
+
+        Rule[] rules = exactHosts.get(host);
+        if (rules != null) {
+            for (Rule rule : rules) {
+                if (rule.matches(scheme, uri.getPort(), rawPath)) {
+                    return rule.pattern();
+                }
+            }
+        }
+
+        for (Rule rule : wildcards) {
+            String suffix = rule.hostSuffix();
+            if (host.length() > suffix.length()
+                    && host.regionMatches(true, host.length() - suffix.length(), suffix, 0, suffix.length())
+                    && rule.matches(scheme, uri.getPort(), rawPath)) {
+                return rule.pattern();
+            }
+        }
+
+        return null;
+    }
+
+    private static Rule parse(String pattern) {
+        String rest = pattern.trim();
+        if (rest.isEmpty()) {
+            throw new IllegalArgumentException("Padrão de domínio vazio");
+        }
+
+        String scheme = null;
+        int schemeEnd = rest.indexOf("://");
+        if (schemeEnd >= 0) {
+            scheme = rest.substring(0, schemeEnd).toLowerCase();
+            rest = rest.substring(schemeEnd + 3);
+        }
+
+        String pathPrefix = null;
+        int pathStart = rest.indexOf('/');
+        if (pathStart >= 0) {
+            String path = rest.substring(pathStart);
+            pathPrefix = "/".equals(path) ? null : stripTrailingSlash(path);
+            rest = rest.substring(0, pathStart);
+        }
+
+        int port = -1;
+        int portStart = rest.lastIndexOf(':');
+        if (portStart >= 0 && rest.indexOf(']') < portStart) {
+            try {
+                port = Integer.parseInt(rest.substring(portStart + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Porta inválida no padrão de domínio: " + pattern);
+            }
+            rest = rest.substring(0, portStart);
+        }
+
+        if (rest.isEmpty()) {
+            throw new IllegalArgumentException("Padrão de domínio sem host: " + pattern);
+        }
+
+        if (rest.startsWith("*.")) {
+            return new Rule(pattern.trim(), scheme, null, rest.substring(1), port, pathPrefix);
+        }
+        if (rest.contains("*")) {
+            throw new IllegalArgumentException("Curinga só é aceito como primeiro rótulo (*.dominio): " + pattern);
+        }
+
+        // URI.getHost() mantém os colchetes do IPv6
+        return new Rule(pattern.trim(), scheme, rest, null, port, pathPrefix);
+    }
+
+    // Segmentos '.'/'..' (inclusive '..' iniciais que sobram de normalize(), como /../x) e codificações
+    // de '.', '/' e '\\', decodificadas por alguns servidores antes de resolver o caminho
+    private static boolean isSafePath(String rawPath) {
+        if (rawPath == null) {
+            return true;
+        }
+
+        int length = rawPath.length();
+        for (int i = 0; i < length; i++) {
+            char c = rawPath.charAt(i);
+            if (c == '\\') {
+                return false;
+            }
+            if (c == '%' && (rawPath.regionMatches(true, i, "%2e", 0, 3)
+                    || rawPath.regionMatches(true, i, "%2f", 0, 3)
+                    || rawPath.regionMatches(true, i, "%5c", 0, 3))) {
+                return false;
+            }
+        }
+
+        int start = 0;
+        while (start <= length) {
+            int end = rawPath.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (isDotSegment(rawPath, start, end)) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    // ".", "..", e "..;x"/".;x" (tratados como "."/".." por alguns servidores: parâmetros de caminho)
+    private static boolean isDotSegment(String path, int start, int end) {
+        int afterDots;
+        if (path.startsWith("..", start) && start + 2 <= end) {
+            afterDots = start + 2;
+        } else if (start < end && path.charAt(start) == '.') {
+            afterDots = start + 1;
+        } else {
+            return false;
+        }
+        return afterDots == end || path.charAt(afterDots) == ';';
+    }
+
+    private static String stripTrailingSlash(String path) {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private static int defaultPort(String scheme) {
+        if ("https".equalsIgnoreCase(scheme)) {
+            return 443;
+        }
+        if ("http".equalsIgnoreCase(scheme)) {
+            return 80;
+        }
+        return -1;
+    }
+
+    private record Rule(String pattern, String scheme, String host, String hostSuffix, int port, String pathPrefix) {
+
+        boolean matches(String uriScheme, int uriPort, String rawPath) {
+            if (scheme != null ? !scheme.equalsIgnoreCase(uriScheme) : defaultPort(uriScheme) < 0) {
+                return false;
+            }
+
+            // Sem porta no padrão = porta padrão do esquema da requisição
+            int effectivePort = uriPort != -1 ? uriPort : defaultPort(uriScheme);
+            int expectedPort = port != -1 ? port : defaultPort(uriScheme);
+            if (effectivePort != expectedPort) {
+                return false;
+            }
+
+            if (pathPrefix == null) {
+                return true;
+            }
+
+            // Prefixo respeita fronteira de segmento: /v1 casa /v1 e /v1/x, não /v10
+            return rawPath != null
+                    && rawPath.startsWith(pathPrefix)
+                    && (rawPath.length() == pathPrefix.length() || rawPath.charAt(pathPrefix.length()) == '/');
+        }
+    }
+}
@@ -1,54 +1,124 @@
 package com.company.agent.infrastructure.tools;
 
+import com.company.agent.domain.EmailMessage;
+import com.company.agent.domain.EmailMessageRepository;
+import com.company.agent.infrastructure.security.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.UUID;
 import java.util.function.Function;
 
+// Só grava a mensagem no outbox (email_outbox): o envio SMTP fica com o EmailDispatcher, fora do turno do agente
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class EmailTool implements Function<EmailTool.Request, EmailTool.Response> {
 
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 200;
+    private static final int MAX_SUBJECT_LENGTH = 1000;
+
+    private final EmailMessageRepository outbox;
+    private final TenantContext tenantContext;
+    private final MeterRegistry meterRegistry;
+
     @Override
     public Response apply(Request request) {
-        log.info("Simulando envio de email para: {}", request.to());
+        log.info("Enfileirando email para: {}", request.to());
 
         try {
-            // Em um ambiente real, integraria com um provedor de email como SendGrid, SES, etc.
-            // Por enquanto, apenas simula o envio
-
+            if (request.to() == null || request.to().isEmpty()) {
+                throw new IllegalArgumentException("Informe ao menos um destinatário");
+            }
             validateEmail(request.to());
+            validateEmail(request.cc());
+            validateEmail(request.bcc());
+
+            if (request.subject() == null || request.subject().length() > MAX_SUBJECT_LENGTH) {
+                throw new IllegalArgumentException("Assunto obrigatório, com até " + MAX_SUBJECT_LENGTH + " caracteres");
+            }
+
+            String tenant = tenantContext.hasTenant() ? tenantContext.getCurrentTenant() : "default";
+            String idempotencyKey = idempotencyKey(request);
+
+            EmailMessage message = EmailMessage.builder()
+                    .tenant(tenant)
+                    .idempotencyKey(idempotencyKey)
+                    .to(request.to())
+                    .cc(request.cc())
+                    .bcc(request.bcc())
+                    .subject(request.subject())
+                    .body(request.body() != null ? request.body() : "")
+                    .status(EmailMessage.Status.PENDING)
+                    .build();
 
-            log.info("Email enviado com sucesso:");
-            log.info("  Para: {}", request.to());
-            log.info("  Assunto: {}", request.subject());
-            log.info("  Corpo: {}", request.body().substring(0, Math.min(100, request.body().length())));
+            boolean queued = outbox.enqueue(message);
+            meterRegistry.counter("agent.email.enqueued", "outcome", queued ? "queued" : "duplicate").increment();
+
+            if (!queued) {
+                log.info("Email com chave {} já enfileirado para o tenant {}, ignorando", idempotencyKey, tenant);
+                return new Response(true, "Email já enfileirado anteriormente (chave " + idempotencyKey
+                        + "); não será enviado de novo");
+            }
 
-            return new Response(true, "Email enviado com sucesso para " + request.to());
+            return new Response(true, "Email enfileirado para envio a " + request.to());
 
         } catch (Exception e) {
-            log.error("Erro ao enviar email: {}", e.getMessage(), e);
-            return new Response(false, "Erro ao enviar email: " + e.getMessage());
+            log.error("Erro ao enfileirar email: {}", e.getMessage(), e);
+            return new Response(false, "Erro ao enfileirar email: " + e.getMessage());
         }
     }
 
     private void validateEmail(List<String> emails) {
+        if (emails == null) {
+            return;
+        }
+
         for (String email : emails) {
-            if (!email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$")) {
+            if (email == null || !email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$")) {
                 throw new IllegalArgumentException("Email inválido: " + email);
             }
         }
     }
 
+    // Chave informada pelo modelo ou hash da task + conteúdo: repetir a chamada (retry do turno, task
+    // reexecutada) não gera um segundo envio, mas outra task pode enviar o mesmo email (ex.: lembrete recorrente)
+    private String idempotencyKey(Request request) {
+        if (request.idempotencyKey() != null && !request.idempotencyKey().isBlank()) {
+            String key = request.idempotencyKey().strip();
+            return key.length() > MAX_IDEMPOTENCY_KEY_LENGTH ? "sha256:" + sha256(key) : key;
+        }
+
+        UUID taskId = tenantContext.getCurrentTask();
+        return "sha256:" + sha256(String.join("\u0000",
+                String.valueOf(taskId),
+                String.valueOf(request.to()), String.valueOf(request.cc()), String.valueOf(request.bcc()),
+                request.subject(), String.valueOf(request.body())));
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
     public record Request(
             List<String> to,
             String subject,
             String body,
             List<String> cc,
-            List<String> bcc
+            List<String> bcc,
+            String idempotencyKey // Opcional: mesma chave = mesmo email (padrão: hash da task, destinatários, assunto e corpo)
     ) {}
 
     public record Response(
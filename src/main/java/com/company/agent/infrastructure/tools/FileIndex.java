@@ -0,0 +1,280 @@
+package com.company.agent.infrastructure.tools;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Índice em memória da árvore de arquivos do agente, usado pelo FIND da FileTool no lugar de percorrer o disco.
+// Construído uma vez no startup e mantido pelo WatchService (um registro por diretório, já que o watch não é
+// recursivo); overflow de eventos ou árvore acima de max-entries desativa o índice até a reconstrução
+@Component
+@Slf4j
+public class FileIndex implements DisposableBean {
+
+    private final Path root;
+
+    // Caminho relativo ('/' como separador) -> atributos; ordenado para paginação estável e busca por prefixo
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile WatchService watchService;
+    private Thread watcherThread;
+
+    @Value("${agent.tools.file.index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${agent.tools.file.index.max-entries:500000}")
+    private int maxEntries;
+
+    public FileIndex(MeterRegistry meterRegistry) {
+        this.root = Paths.get(FileTool.ALLOWED_BASE_PATH);
+
+        Gauge.builder("agent.tools.file.index.entries", entries, Map::size)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        watcherThread = Thread.ofPlatform()
+                .name("agent-file-index")
+                .daemon(true)
+                .start(this::watch);
+    }
+
+    @Override
+    public void destroy() {
+        ready = false;
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.debug("Erro ao fechar WatchService do índice de arquivos: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Entradas sob 'base' (exclusive) até maxDepth níveis, casando com o matcher (aplicado ao caminho relativo a base);
+    // pula 'offset' resultados e devolve no máximo 'limit'
+    public List<Entry> find(Path base, PathMatcher matcher, boolean matchFileName, int maxDepth, long offset, int limit) {
+        String prefix = relativize(base);
+        NavigableMap<String, Entry> subtree = prefix.isEmpty()
+                ? entries
+                // '0' é o caractere seguinte a '/': intervalo = tudo que começa com "prefix/"
+                : entries.subMap(prefix + "/", true, prefix + "0", false);
+        int skip = prefix.isEmpty() ? 0 : prefix.length() + 1;
+
+        List<Entry> matches = new ArrayList<>();
+        long skipped = 0;
+
+        for (Map.Entry<String, Entry> candidate : subtree.entrySet()) {
+            String relative = candidate.getKey().substring(skip);
+            if (depth(relative) > maxDepth) {
+                continue;
+            }
+
+            Path path = Paths.get(relative);
+            if (!matcher.matches(matchFileName ? path.getFileName() : path)) {
+                continue;
+            }
+
+            if (skipped++ < offset) {
+                continue;
+            }
+
+            matches.add(candidate.getValue().withPath(relative));
+            if (matches.size() == limit) {
+                break;
+            }
+        }
+
+        return matches;
+    }
+
+    private void watch() {
+        try (WatchService service = root.getFileSystem().newWatchService()) {
+            watchService = service;
+            Files.createDirectories(root);
+            rebuild();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                Path directory = watchedDirectories.get(key);
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                        // Eventos perdidos: o índice não é mais confiável
+                        log.warn("Eventos de arquivo perdidos, reconstruindo índice de {}", root);
+                        rebuild();
+                        break;
+                    }
+                    apply(directory.resolve((Path) event.context()), event.kind());
+                }
+
+                if (!key.reset()) {
+                    // Diretório removido ou inacessível
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Índice de arquivos desativado: {}", e.getMessage(), e);
+        } finally {
+            ready = false;
+        }
+    }
+
+    private void rebuild() throws IOException {
+        ready = false;
+        watchedDirectories.keySet().forEach(WatchKey::cancel);
+        watchedDirectories.clear();
+        entries.clear();
+
+        long start = System.currentTimeMillis();
+        if (index(root)) {
+            ready = true;
+            log.info("Índice de arquivos construído: {} entradas em {}ms", entries.size(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    // Percorre a subárvore registrando diretórios no WatchService; false se o limite de entradas foi excedido
+    private boolean index(Path start) throws IOException {
+        boolean[] exceeded = {false};
+
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, dir);
+                return put(dir, attributes);
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                return put(file, attributes);
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Removido durante a varredura ou sem permissão: ignorado
+                return FileVisitResult.CONTINUE;
+            }
+
+            private FileVisitResult put(Path path, BasicFileAttributes attributes) {
+                if (!path.equals(root)) {
+                    entries.put(relativize(path), Entry.of(null, attributes));
+                }
+                if (entries.size() > maxEntries) {
+                    exceeded[0] = true;
+                    return FileVisitResult.TERMINATE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        if (exceeded[0]) {
+            log.warn("Árvore de {} excede {} entradas: índice desativado, FIND percorre o disco", root, maxEntries);
+            watchedDirectories.keySet().forEach(WatchKey::cancel);
+            watchedDirectories.clear();
+            entries.clear();
+            ready = false;
+            return false;
+        }
+        return true;
+    }
+
+    private void apply(Path path, WatchEvent.Kind<?> kind) throws IOException {
+        String relative = relativize(path);
+
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            entries.remove(relative);
+            entries.subMap(relative + "/", true, relative + "0", false).clear();
+            return;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+
+            if (attributes.isDirectory() && kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                // Diretório novo (ou movido para dentro da árvore): registra e indexa o conteúdo
+                if (!index(path)) {
+                    return;
+                }
+            } else {
+                entries.put(relative, Entry.of(null, attributes));
+            }
+        } catch (NoSuchFileException e) {
+            entries.remove(relative);
+        }
+    }
+
+    private String relativize(Path path) {
+        return root.relativize(path.normalize()).toString().replace('\\', '/');
+    }
+
+    private static int depth(String relative) {
+        int depth = 1;
+        for (int i = 0; i < relative.length(); i++) {
+            if (relative.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    // Atributos lidos em uma única chamada (stat) por entrada
+    public record Entry(String path, boolean directory, long size, long modifiedMillis) {
+
+        static Entry of(String path, BasicFileAttributes attributes) {
+            return new Entry(path, attributes.isDirectory(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis());
+        }
+
+        Entry withPath(String path) {
+            return new Entry(path, directory, size, modifiedMillis);
+        }
+    }
+}
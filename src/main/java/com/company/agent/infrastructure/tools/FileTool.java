@@ -1,19 +1,81 @@
 package com.company.agent.infrastructure.tools;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class FileTool implements Function<FileTool.Request, FileTool.Response> {
 
-    private static final String ALLOWED_BASE_PATH = "/tmp/agent-files/";
+    static final String ALLOWED_BASE_PATH = "/tmp/agent-files/";
+
+    private static final int DEFAULT_LINE_COUNT = 50;
+    private static final int TAIL_BLOCK_BYTES = 8192;
+    private static final int MAX_PATTERN_LENGTH = 500;
+
+    private final FileIndex fileIndex;
+
+    // Limite de bytes devolvidos por operação de leitura (range, linhas, head/tail, grep)
+    @Value("${agent.tools.file.max-read-bytes:64KB}")
+    private DataSize maxReadBytes;
+
+    // Acima disso leituras por range usam mmap da região (sem cópia para o heap além do trecho pedido)
+    @Value("${agent.tools.file.mmap-threshold:16MB}")
+    private DataSize mmapThreshold;
+
+    // Linhas maiores que isso são cortadas na leitura (arquivo de uma linha só não estoura a memória)
+    @Value("${agent.tools.file.max-line-bytes:8KB}")
+    private DataSize maxLineBytes;
+
+    // Entradas por página do LIST e resultados por chamada do FIND (continuação via nextOffset)
+    @Value("${agent.tools.file.page-size:200}")
+    private int defaultPageSize;
+
+    @Value("${agent.tools.file.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${agent.tools.file.max-depth:10}")
+    private int maxFindDepth;
+
+    // Limites de cada chamada do GREP (bytes varridos e tempo, inclusive do regex): o restante continua com nextLine
+    @Value("${agent.tools.file.grep-max-scan-bytes:256MB}")
+    private DataSize grepMaxScanBytes;
+
+    @Value("${agent.tools.file.grep-timeout:PT5S}")
+    private Duration grepTimeout;
 
     @Override
     public Response apply(Request request) {
@@ -23,10 +85,15 @@ public class FileTool implements Function<FileTool.Request, FileTool.Response> {
             Path filePath = validateAndResolvePath(request.path());
 
             return switch (request.operation().toUpperCase()) {
-                case "READ" -> readFile(filePath);
+                case "READ" -> readFile(filePath, request);
+                case "HEAD" -> readLines(filePath, 1, lineCount(request));
+                case "TAIL" -> tail(filePath, lineCount(request));
+                case "GREP" -> grep(filePath, request);
                 case "WRITE" -> writeFile(filePath, request.content());
+                case "APPEND" -> appendFile(filePath, request.content());
                 case "DELETE" -> deleteFile(filePath);
-                case "LIST" -> listDirectory(filePath);
+                case "LIST" -> listDirectory(filePath, request);
+                case "FIND" -> find(filePath, request);
                 case "EXISTS" -> checkExists(filePath);
                 default -> new Response(false, "Operação não suportada: " + request.operation(), null);
             };
@@ -47,7 +114,7 @@ public class FileTool implements Function<FileTool.Request, FileTool.Response> {
         return resolved;
     }
 
-    private Response readFile(Path path) throws IOException {
+    private Response checkRegularFile(Path path) {
         if (!Files.exists(path)) {
             return new Response(false, "Arquivo não encontrado: " + path, null);
         }
@@ -56,8 +123,267 @@ public class FileTool implements Function<FileTool.Request, FileTool.Response> {
             return new Response(false, "Caminho é um diretório, não um arquivo", null);
         }
 
-        String content = Files.readString(path);
-        return new Response(true, "Arquivo lido com sucesso", content);
+        return null;
+    }
+
+    // Sem parâmetros lê do início até o limite; offset/length = range em bytes; startLine/lineCount = janela de linhas
+    private Response readFile(Path path, Request request) throws IOException {
+        Response invalid = checkRegularFile(path);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        if (request.startLine() != null) {
+            return readLines(path, request.startLine(), lineCount(request));
+        }
+
+        long offset = request.offset() != null ? Math.max(0, request.offset()) : 0;
+        int budget = (int) maxReadBytes.toBytes();
+        int length = request.length() != null ? Math.min(Math.max(0, request.length()), budget) : budget;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (offset >= size) {
+                return new Response(true, "Fim do arquivo (" + size + " bytes)", "", null, null);
+            }
+
+            int toRead = (int) Math.min(length, size - offset);
+            byte[] bytes = new byte[toRead];
+
+            if (size >= mmapThreshold.toBytes()) {
+                // Mapeia só a região pedida: páginas carregadas sob demanda pelo SO, fora do heap
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, toRead).get(bytes);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                    // Leitura posicional até completar o range
+                }
+            }
+
+            // Não cortar um caractere UTF-8 ao meio: o restante dele fica para a próxima leitura
+            int end = offset + toRead < size ? utf8Boundary(bytes, toRead) : toRead;
+            long next = offset + end;
+
+            String message = String.format("Bytes %d-%d de %d", offset, next, size);
+            return new Response(true, message, new String(bytes, 0, end, StandardCharsets.UTF_8),
+                    next < size ? next : null, null);
+        }
+    }
+
+    // Janela de linhas lida em streaming: memória limitada ao trecho devolvido, independente do tamanho do arquivo
+    private Response readLines(Path path, int startLine, int lineCount) throws IOException {
+        Response invalid = checkRegularFile(path);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        int first = Math.max(1, startLine);
+        long budget = maxReadBytes.toBytes();
+        StringBuilder content = new StringBuilder();
+        long used = 0;
+        int lineNumber = 0;
+        int emitted = 0;
+
+        try (LineReader reader = new LineReader(Files.newInputStream(path), (int) maxLineBytes.toBytes())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber < first) {
+                    continue;
+                }
+
+                long lineBytes = reader.lastLineBytes() + 1;
+                if (emitted == lineCount || (emitted > 0 && used + lineBytes > budget)) {
+                    return new Response(true, String.format("Linhas %d-%d", first, lineNumber - 1),
+                            content.toString(), null, (long) lineNumber);
+                }
+
+                content.append(line).append('\n');
+                used += lineBytes;
+                emitted++;
+            }
+        }
+
+        String message = emitted == 0
+                ? "Arquivo tem " + lineNumber + " linhas"
+                : String.format("Linhas %d-%d (fim do arquivo)", first, first + emitted - 1);
+        return new Response(true, message, content.toString(), null, null);
+    }
+
+    // Lê blocos a partir do fim até achar as N últimas linhas (ou esgotar o orçamento), sem percorrer o arquivo
+    private Response tail(Path path, int lineCount) throws IOException {
+        Response invalid = checkRegularFile(path);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        long budget = maxReadBytes.toBytes();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = size;
+            int newlines = 0;
+
+            // Quebra de linha final não conta como linha extra
+            long scanEnd = size;
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, size - 1);
+                if (last.get(0) == '\n') {
+                    scanEnd = size - 1;
+                }
+            }
+
+            ByteBuffer block = ByteBuffer.allocate(TAIL_BLOCK_BYTES);
+            long position = scanEnd;
+            search:
+            while (position > 0 && scanEnd - position < budget) {
+                int blockSize = (int) Math.min(TAIL_BLOCK_BYTES, position);
+                position -= blockSize;
+                block.clear().limit(blockSize);
+                channel.read(block, position);
+
+                for (int i = blockSize - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n' && ++newlines == lineCount) {
+                        start = position + i + 1;
+                        break search;
+                    }
+                }
+                start = position;
+            }
+
+            // Orçamento: mantém o final do arquivo, ajustando o início para uma fronteira de caractere
+            start = Math.max(start, size - budget);
+            byte[] bytes = new byte[(int) (size - start)];
+            channel.read(ByteBuffer.wrap(bytes), start);
+
+            int skip = 0;
+            while (skip < bytes.length && (bytes[skip] & 0xC0) == 0x80) {
+                skip++;
+            }
+
+            return new Response(true, String.format("Últimas linhas (bytes %d-%d de %d)", start + skip, size, size),
+                    new String(bytes, skip, bytes.length - skip, StandardCharsets.UTF_8), null, null);
+        }
+    }
+
+    // Só as linhas que casam (com número da linha); varredura em streaming, parando no orçamento
+    private Response grep(Path path, Request request) throws IOException {
+        Response invalid = checkRegularFile(path);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        if (request.pattern() == null || request.pattern().isEmpty() || request.pattern().length() > MAX_PATTERN_LENGTH) {
+            return new Response(false, "Informe um padrão (regex) com até " + MAX_PATTERN_LENGTH + " caracteres", null);
+        }
+
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(request.pattern());
+        } catch (PatternSyntaxException e) {
+            return new Response(false, "Padrão inválido: " + e.getDescription(), null);
+        }
+
+        int first = request.startLine() != null ? Math.max(1, request.startLine()) : 1;
+        long budget = maxReadBytes.toBytes();
+        long deadline = 0;
+        StringBuilder content = new StringBuilder();
+        long used = 0;
+        long scanStart = -1;
+        int lineNumber = 0;
+        int matches = 0;
+
+        try (LineReader reader = new LineReader(Files.newInputStream(path), (int) maxLineBytes.toBytes())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber < first) {
+                    continue;
+                }
+
+                // Limites contam a partir da primeira linha avaliada, que sempre é avaliada (a continuação progride)
+                if (scanStart < 0) {
+                    scanStart = reader.bytesRead();
+                    deadline = System.nanoTime() + grepTimeout.toNanos();
+                } else if (reader.bytesRead() - scanStart > grepMaxScanBytes.toBytes() || System.nanoTime() > deadline) {
+                    return new Response(true, matches + " ocorrências até a linha " + (lineNumber - 1)
+                            + " (limite de varredura desta chamada); continue com startLine=" + lineNumber,
+                            content.toString(), null, (long) lineNumber);
+                }
+
+                boolean found;
+                try {
+                    found = pattern.matcher(new DeadlineCharSequence(line, deadline)).find();
+                } catch (DeadlineCharSequence.DeadlineExceededException e) {
+                    // Regex com backtracking catastrófico: a linha fica sem avaliação e a continuação segue após ela
+                    return new Response(true, matches + " ocorrências até a linha " + (lineNumber - 1)
+                            + "; linha " + lineNumber + " não avaliada (regex excedeu " + grepTimeout.toMillis()
+                            + " ms); continue com startLine=" + (lineNumber + 1),
+                            content.toString(), null, (long) lineNumber + 1);
+                }
+                if (!found) {
+                    continue;
+                }
+
+                String entry = lineNumber + ": " + line + "\n";
+                if (matches > 0 && used + entry.length() > budget) {
+                    return new Response(true, matches + " ocorrências até a linha " + (lineNumber - 1)
+                            + "; continue com startLine=" + lineNumber, content.toString(), null, (long) lineNumber);
+                }
+
+                content.append(entry);
+                used += entry.length();
+                matches++;
+            }
+        }
+
+        return new Response(true, matches + " ocorrências (" + lineNumber + " linhas lidas)", content.toString());
+    }
+
+    // Texto da linha para o matcher: verifica o prazo a cada bloco de acessos, interrompendo regex
+    // com backtracking catastrófico (o Matcher não responde a interrupção da thread)
+    private static final class DeadlineCharSequence implements CharSequence {
+
+        private static final int CHECK_INTERVAL = 4096;
+
+        private final CharSequence text;
+        private final long deadline;
+        private int accesses;
+
+        DeadlineCharSequence(CharSequence text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++accesses % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                throw new DeadlineExceededException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+
+        static final class DeadlineExceededException extends RuntimeException {
+            DeadlineExceededException() {
+                super(null, null, false, false);
+            }
+        }
     }
 
     private Response writeFile(Path path, String content) throws IOException {
@@ -66,6 +392,16 @@ public class FileTool implements Function<FileTool.Request, FileTool.Response> {
         return new Response(true, "Arquivo escrito com sucesso", null);
     }
 
+    // Escrita incremental: o modelo envia o conteúdo em partes, sem reescrever nem carregar o arquivo
+    private Response appendFile(Path path, String content) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(content != null ? content : "");
+        }
+        return new Response(true, "Conteúdo anexado (" + Files.size(path) + " bytes no arquivo)", null);
+    }
+
     private Response deleteFile(Path path) throws IOException {
         if (!Files.exists(path)) {
             return new Response(false, "Arquivo não encontrado: " + path, null);
@@ -75,7 +411,131 @@ public class FileTool implements Function<FileTool.Request, FileTool.Response> {
         return new Response(true, "Arquivo deletado com sucesso", null);
     }
 
-    private Response listDirectory(Path path) throws IOException {
+    // Página da listagem: DirectoryStream fechado ao fim, entradas anteriores ao offset puladas sem stat e
+    // atributos (tipo, tamanho, data) lidos numa única chamada só para as entradas da página
+    private Response listDirectory(Path path, Request request) throws IOException {
+        Response invalid = checkDirectory(path);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        long offset = request.offset() != null ? Math.max(0, request.offset()) : 0;
+        int limit = pageSize(request);
+        StringBuilder listing = new StringBuilder();
+        long position = 0;
+        int listed = 0;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path entry : stream) {
+                if (position++ < offset) {
+                    continue;
+                }
+
+                if (listed == limit) {
+                    // Posição da entrada atual (entradas removidas durante a listagem não deslocam a continuação)
+                    long next = position - 1;
+                    return new Response(true, String.format("Entradas %d-%d; há mais: continue com offset=%d",
+                            offset + 1, next, next), listing.toString(), next, null);
+                }
+
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    appendEntry(listing, entry.getFileName().toString(), FileIndex.Entry.of(null, attributes));
+                } catch (NoSuchFileException e) {
+                    // Removido durante a listagem
+                    continue;
+                }
+                listed++;
+            }
+        }
+
+        return new Response(true, listed == 0 && offset == 0 ? "Diretório vazio"
+                : String.format("Entradas %d-%d (fim da listagem)", offset + 1, offset + listed), listing.toString());
+    }
+
+    // Busca recursiva por glob: sem '/' no padrão casa com o nome (como find -name), senão com o caminho relativo.
+    // Usa o FileIndex quando ativo; senão percorre o disco com limite de profundidade e para ao completar a página
+    private Response find(Path path, Request request) throws IOException {
+        Response invalid = checkDirectory(path);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        String glob = request.pattern() != null && !request.pattern().isBlank() ? request.pattern() : "*";
+        if (glob.length() > MAX_PATTERN_LENGTH) {
+            return new Response(false, "Padrão com mais de " + MAX_PATTERN_LENGTH + " caracteres", null);
+        }
+
+        PathMatcher matcher;
+        try {
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        } catch (IllegalArgumentException e) {
+            return new Response(false, "Padrão glob inválido: " + e.getMessage(), null);
+        }
+
+        boolean matchFileName = glob.indexOf('/') < 0;
+        int maxDepth = Math.min(request.maxDepth() != null && request.maxDepth() > 0 ? request.maxDepth() : maxFindDepth,
+                maxFindDepth);
+        long offset = request.offset() != null ? Math.max(0, request.offset()) : 0;
+        int limit = pageSize(request);
+
+        // Um resultado a mais para saber se há continuação
+        List<FileIndex.Entry> matches = fileIndex.isReady()
+                ? fileIndex.find(path, matcher, matchFileName, maxDepth, offset, limit + 1)
+                : walk(path, matcher, matchFileName, maxDepth, offset, limit + 1);
+
+        boolean hasMore = matches.size() > limit;
+        StringBuilder result = new StringBuilder();
+        matches.stream().limit(limit).forEach(match -> appendEntry(result, match.path(), match));
+
+        int found = Math.min(matches.size(), limit);
+        String message = found + " resultados para '" + glob + "' (profundidade máxima " + maxDepth + ")";
+        if (hasMore) {
+            message += "; há mais: continue com offset=" + (offset + found);
+        }
+
+        return new Response(true, message, result.toString(), hasMore ? offset + found : null, null);
+    }
+
+    private List<FileIndex.Entry> walk(Path base, PathMatcher matcher, boolean matchFileName,
+                                       int maxDepth, long offset, int limit) throws IOException {
+        List<FileIndex.Entry> matches = new ArrayList<>();
+        long[] skipped = {0};
+
+        Files.walkFileTree(base, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                return dir.equals(base) ? FileVisitResult.CONTINUE : visit(dir, attributes);
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                // No limite de profundidade, diretórios também chegam aqui
+                return visit(file, attributes);
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            private FileVisitResult visit(Path path, BasicFileAttributes attributes) {
+                Path relative = base.relativize(path);
+                if (matcher.matches(matchFileName ? relative.getFileName() : relative) && skipped[0]++ >= offset) {
+                    matches.add(FileIndex.Entry.of(relative.toString().replace('\\', '/'), attributes));
+                    if (matches.size() == limit) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return matches;
+    }
+
+    private Response checkDirectory(Path path) {
         if (!Files.exists(path)) {
             return new Response(false, "Diretório não encontrado: " + path, null);
         }
@@ -84,13 +544,17 @@ public class FileTool implements Function<FileTool.Request, FileTool.Response> {
             return new Response(false, "Caminho não é um diretório", null);
         }
 
-        StringBuilder listing = new StringBuilder();
-        Files.list(path).forEach(p -> {
-            String type = Files.isDirectory(p) ? "[DIR]" : "[FILE]";
-            listing.append(type).append(" ").append(p.getFileName()).append("\n");
-        });
+        return null;
+    }
 
-        return new Response(true, "Listagem do diretório", listing.toString());
+    private static void appendEntry(StringBuilder listing, String name, FileIndex.Entry entry) {
+        if (entry.directory()) {
+            listing.append("[DIR] ").append(name).append('\n');
+        } else {
+            listing.append("[FILE] ").append(name)
+                    .append(" (").append(entry.size()).append(" bytes, ")
+                    .append(Instant.ofEpochMilli(entry.modifiedMillis())).append(")\n");
+        }
     }
 
     private Response checkExists(Path path) {
@@ -99,15 +563,139 @@ public class FileTool implements Function<FileTool.Request, FileTool.Response> {
         return new Response(true, "Existe: " + exists + " (tipo: " + type + ")", String.valueOf(exists));
     }
 
+    private int pageSize(Request request) {
+        return Math.min(request.limit() != null && request.limit() > 0 ? request.limit() : defaultPageSize, maxPageSize);
+    }
+
+    private int lineCount(Request request) {
+        return request.lineCount() != null && request.lineCount() > 0 ? request.lineCount() : DEFAULT_LINE_COUNT;
+    }
+
+    // Maior prefixo de bytes[0..length) que termina em fronteira de caractere UTF-8
+    private static int utf8Boundary(byte[] bytes, int length) {
+        int i = length - 1;
+        int continuation = 0;
+        while (i >= 0 && (bytes[i] & 0xC0) == 0x80 && continuation < 3) {
+            i--;
+            continuation++;
+        }
+        if (i < 0) {
+            return length;
+        }
+
+        int lead = bytes[i] & 0xFF;
+        int expected = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return continuation + 1 >= expected ? length : i;
+    }
+
+    // Leitor de linhas sobre bytes com tamanho máximo por linha: o excesso é descartado, não acumulado.
+    // Lê em blocos para um buffer próprio e procura o '\n' no array (sem uma chamada de read() por byte)
+    private static final class LineReader implements AutoCloseable {
+
+        private final InputStream input;
+        private final int maxLineBytes;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+        private int limit;
+        private long bytesRead;
+        private long lastLineBytes;
+
+        LineReader(InputStream input, int maxLineBytes) {
+            this.input = input;
+            this.maxLineBytes = maxLineBytes;
+        }
+
+        String readLine() throws IOException {
+            line.reset();
+            lastLineBytes = 0;
+            boolean read = false;
+
+            while (true) {
+                if (position == limit) {
+                    int n = input.read(buffer, 0, buffer.length);
+                    if (n <= 0) {
+                        break;
+                    }
+                    position = 0;
+                    limit = n;
+                }
+                read = true;
+
+                int start = position;
+                int newline = start;
+                while (newline < limit && buffer[newline] != '\n') {
+                    newline++;
+                }
+
+                int chunk = newline - start;
+                int room = maxLineBytes - line.size();
+                if (room > 0) {
+                    line.write(buffer, start, Math.min(room, chunk));
+                }
+                lastLineBytes += chunk;
+
+                if (newline < limit) {
+                    position = newline + 1;
+                    bytesRead += chunk + 1;
+                    break;
+                }
+                position = limit;
+                bytesRead += chunk;
+            }
+
+            if (!read) {
+                return null;
+            }
+
+            byte[] bytes = line.toByteArray();
+            int length = bytes.length;
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            String text = new String(bytes, 0, utf8Boundary(bytes, length), StandardCharsets.UTF_8);
+            return lastLineBytes > maxLineBytes ? text + " [linha truncada]" : text;
+        }
+
+        // Tamanho real da última linha no arquivo (sem o '\n'), mesmo quando truncada
+        long lastLineBytes() {
+            return Math.min(lastLineBytes, maxLineBytes);
+        }
+
+        // Bytes do arquivo consumidos até o fim da última linha lida
+        long bytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
     public record Request(
-            String operation, // READ, WRITE, DELETE, LIST, EXISTS
+            String operation, // READ, HEAD, TAIL, GREP, WRITE, APPEND, DELETE, LIST, FIND, EXISTS
             String path,
-            String content
+            String content,
+            Long offset,       // READ por range: posição inicial em bytes; LIST/FIND: entradas a pular (continuar com nextOffset)
+            Integer length,    // READ por range: quantidade de bytes (limitada por max-read-bytes)
+            Integer startLine, // READ/GREP por linhas: primeira linha (1-based; continuar com nextLine)
+            Integer lineCount, // READ/HEAD/TAIL: quantidade de linhas
+            String pattern,    // GREP: expressão regular; FIND: glob (ex.: "*.csv", "relatorios/**/*.pdf")
+            Integer limit,     // LIST/FIND: entradas por página
+            Integer maxDepth   // FIND: profundidade máxima a partir de path
     ) {}
 
     public record Response(
             boolean success,
             String message,
-            String content
-    ) {}
+            String content,
+            Long nextOffset,
+            Long nextLine
+    ) {
+
+        public Response(boolean success, String message, String content) {
+            this(success, message, content, null, null);
+        }
+    }
 }
@@ -0,0 +1,320 @@
+package com.company.agent.infrastructure.tools;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+// Cache HTTP privado por tenant para os GETs da HttpTool, no estilo RFC 7234: frescor por
+// Cache-Control/Expires e revalidação condicional (If-None-Match/If-Modified-Since) quando expira.
+// Camada em memória limitada por tamanho; entradas despejadas podem ir para disco (spill)
+@Component
+@Slf4j
+public class HttpResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Path diskDir;
+    private final long maxDiskBytes;
+    private final Cache<String, Entry> memoryTier;
+
+    public HttpResponseCache(ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${agent.http.cache.enabled:true}") boolean enabled,
+                             @Value("${agent.http.cache.max-memory:32MB}") DataSize maxMemory,
+                             @Value("${agent.http.cache.disk-dir:}") String diskDir,
+                             @Value("${agent.http.cache.max-disk:512MB}") DataSize maxDisk) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.diskDir = diskDir.isBlank() ? null : Path.of(diskDir);
+        this.maxDiskBytes = maxDisk.toBytes();
+
+        this.memoryTier = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((String key, Entry entry) -> entry.weight())
+                .removalListener((String key, Entry entry, RemovalCause cause) -> {
+                    // Só despejo por tamanho vai para disco; substituições e invalidações não
+                    if (cause == RemovalCause.SIZE && key != null && entry != null) {
+                        spill(key, entry);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memoryTier, "http_response");
+
+        if (this.diskDir != null) {
+            try {
+                Files.createDirectories(this.diskDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("Não foi possível criar o diretório do cache HTTP: " + diskDir, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Chave: tenant + URL + headers da requisição (Authorization/Accept distintos = representações distintas)
+    public String key(String tenant, URI uri, Map<String, String> headers) {
+        StringBuilder key = new StringBuilder(tenant).append('\n').append(uri);
+        if (headers != null) {
+            new TreeMap<>(headers).forEach((name, value) -> key.append('\n').append(name.toLowerCase()).append(':').append(value));
+        }
+        return sha256(key.toString());
+    }
+
+    public Entry get(String key) {
+        Entry entry = memoryTier.getIfPresent(key);
+        if (entry == null && diskDir != null) {
+            entry = fromDisk(key);
+            if (entry != null) {
+                memoryTier.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    // Armazena a resposta 200 se os headers permitirem; retorna null quando não cacheável
+    public Entry store(String key, int statusCode, String body, HttpHeaders headers, Duration ttlOverride) {
+        Long freshness = freshnessMillis(headers, ttlOverride);
+        String etag = headers.getETag();
+        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        boolean revalidatable = etag != null || lastModified != null;
+
+        if (statusCode != 200 || freshness == null || (freshness <= 0 && !revalidatable)) {
+            return null;
+        }
+
+        Entry entry = new Entry(statusCode, body, etag, lastModified,
+                System.currentTimeMillis() + freshness, revalidatable);
+        memoryTier.put(key, entry);
+        return entry;
+    }
+
+    // 304: mantém o corpo armazenado e renova frescor/validadores com os headers da revalidação
+    public Entry revalidated(String key, Entry entry, HttpHeaders headers, Duration ttlOverride) {
+        Long freshness = freshnessMillis(headers, ttlOverride);
+        if (freshness == null) {
+            invalidate(key);
+            return entry;
+        }
+
+        Entry refreshed = new Entry(entry.statusCode(), entry.body(),
+                headers.getETag() != null ? headers.getETag() : entry.etag(),
+                headers.getFirst(HttpHeaders.LAST_MODIFIED) != null
+                        ? headers.getFirst(HttpHeaders.LAST_MODIFIED)
+                        : entry.lastModified(),
+                System.currentTimeMillis() + Math.max(freshness, 0), entry.revalidatable());
+        memoryTier.put(key, refreshed);
+        return refreshed;
+    }
+
+    public void invalidate(String key) {
+        memoryTier.invalidate(key);
+        if (diskDir != null) {
+            deleteQuietly(diskDir.resolve(key));
+        }
+    }
+
+    public void record(String result) {
+        meterRegistry.counter("agent.http.cache", "result", result).increment();
+    }
+
+    // null = não armazenar (no-store); 0 = armazenar apenas para revalidação
+    private Long freshnessMillis(HttpHeaders headers, Duration ttlOverride) {
+        String cacheControl = headers.getCacheControl() != null ? headers.getCacheControl().toLowerCase() : "";
+        if (cacheControl.contains("no-store")) {
+            return null;
+        }
+
+        // Override da política da fase tem precedência sobre o frescor anunciado pelo servidor
+        if (ttlOverride != null) {
+            return ttlOverride.toMillis();
+        }
+
+        if (cacheControl.contains("no-cache")) {
+            return 0L;
+        }
+
+        for (String directive : cacheControl.split(",")) {
+            String trimmed = directive.trim();
+            if (trimmed.startsWith("max-age=")) {
+                try {
+                    long maxAge = Long.parseLong(trimmed.substring("max-age=".length()).replace("\"", ""));
+                    long age = parseLongOrZero(headers.getFirst(HttpHeaders.AGE));
+                    return Math.max(0, maxAge - age) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0L;
+                }
+            }
+        }
+
+        try {
+            long expires = headers.getExpires();
+            if (expires > 0) {
+                long date = headers.getDate() > 0 ? headers.getDate() : System.currentTimeMillis();
+                return Math.max(0, expires - date);
+            }
+        } catch (IllegalArgumentException e) {
+            // Header Date inválido: tratar como já expirado
+            return 0L;
+        }
+
+        return 0L;
+    }
+
+    private void spill(String key, Entry entry) {
+        if (diskDir == null || (!entry.isFresh() && !entry.revalidatable())) {
+            return;
+        }
+
+        try {
+            Path tmp = diskDir.resolve(key + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), entry);
+            Files.move(tmp, diskDir.resolve(key),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Erro ao gravar resposta HTTP em disco: {}", e.getMessage());
+        }
+    }
+
+    private Entry fromDisk(String key) {
+        Path file = diskDir.resolve(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            Entry entry = objectMapper.readValue(file.toFile(), Entry.class);
+            // Promovida de volta para a memória: o arquivo é recriado se for despejada de novo
+            deleteQuietly(file);
+            return entry;
+        } catch (IOException e) {
+            log.warn("Entrada inválida no cache HTTP em disco {}: {}", file, e.getMessage());
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    // Remove entradas em disco expiradas sem validadores e as mais antigas acima de max-disk
+    @Scheduled(fixedDelayString = "${agent.http.cache.disk-cleanup-interval:PT10M}")
+    public void cleanupDisk() {
+        if (diskDir == null) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(diskDir)) {
+            listing.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparingLong(this::lastModifiedMillis).reversed())
+                    .forEach(files::add);
+        } catch (IOException e) {
+            log.warn("Erro ao listar cache HTTP em disco: {}", e.getMessage());
+            return;
+        }
+
+        long total = 0;
+        int removed = 0;
+        for (Path file : files) {
+            try {
+                long size = Files.size(file);
+                Entry entry = objectMapper.readValue(file.toFile(), Entry.class);
+                if ((!entry.isFresh() && !entry.revalidatable()) || total + size > maxDiskBytes) {
+                    deleteQuietly(file);
+                    removed++;
+                } else {
+                    total += size;
+                }
+            } catch (IOException e) {
+                deleteQuietly(file);
+                removed++;
+            }
+        }
+
+        if (removed > 0) {
+            log.debug("Cache HTTP em disco: {} entradas removidas, {} bytes em uso", removed, total);
+        }
+    }
+
+    private long lastModifiedMillis(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Erro ao remover {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static long parseLongOrZero(String value) {
+        try {
+            return value != null ? Long.parseLong(value.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    public record Entry(
+            int statusCode,
+            String body,
+            String etag,
+            String lastModified,
+            long expiresAt,
+            boolean revalidatable
+    ) {
+
+        @JsonIgnore
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        // Peso aproximado em bytes (chars UTF-16 + overhead fixo)
+        int weight() {
+            return (body != null ? body.length() * 2 : 0) + 256;
+        }
+    }
+}
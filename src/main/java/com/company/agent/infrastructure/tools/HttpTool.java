@@ -1,13 +1,30 @@
 package com.company.agent.infrastructure.tools;
 
+import com.company.agent.infrastructure.security.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ConnectTimeoutException;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 @Component
@@ -16,68 +33,237 @@ import java.util.function.Function;
 public class HttpTool implements Function<HttpTool.Request, HttpTool.Response> {
 
     private final WebClient webClient;
-    private Set<String> allowedDomains = Set.of(
+    private final MeterRegistry meterRegistry;
+    private final HttpResponseCache responseCache;
+    private final TenantContext tenantContext;
+    private Map<String, Duration> cacheTtls = Map.of();
+    private DomainMatcher allowedDomains = DomainMatcher.compile(List.of(
             "https://httpbin.org",
             "https://jsonplaceholder.typicode.com",
             "https://api.github.com"
-    );
+    ));
+
+    // Tempo total da requisição (conexão + corpo); connect/read timeouts ficam no WebClient
+    @Value("${agent.http.request-timeout:PT60S}")
+    private Duration requestTimeout;
+
+    // Corpo lido em streaming até o limite e truncado: o excesso nunca chega à memória nem ao modelo
+    @Value("${agent.http.max-response-bytes:16384}")
+    private int maxResponseBytes;
 
     @Override
     public Response apply(Request request) {
+        return execute(request).block();
+    }
+
+    // Caminho não bloqueante: quem já está em contexto reativo compõe o Mono sem prender thread
+    public Mono<Response> execute(Request request) {
         log.info("Executando HTTP {} para {}", request.method(), request.url());
 
+        URI uri;
+        String rule;
+        HttpMethod method;
         try {
-            // Validar domínio permitido
-            URI uri = URI.create(request.url());
-            String baseUrl = uri.getScheme() + "://" + uri.getHost();
+            // Validar domínio permitido; a requisição usa o mesmo URI normalizado que foi validado
+            uri = URI.create(request.url()).normalize();
+            rule = allowedDomains.match(uri);
 
-            if (!allowedDomains.contains(baseUrl)) {
-                return new Response(false, "Domínio não permitido: " + baseUrl, null, 403);
+            if (rule == null) {
+                return Mono.just(new Response(false,
+                        "Domínio não permitido: " + uri.getScheme() + "://" + uri.getAuthority(), null, 403));
             }
 
-            // Executar requisição
-            WebClient.ResponseSpec responseSpec = switch (request.method().toUpperCase()) {
-                case "GET" -> webClient.get()
-                        .uri(request.url())
-                        .headers(h -> request.headers().forEach(h::add))
-                        .retrieve();
-
-                case "POST" -> webClient.post()
-                        .uri(request.url())
-                        .headers(h -> request.headers().forEach(h::add))
-                        .bodyValue(request.body() != null ? request.body() : "")
-                        .retrieve();
-
-                case "PUT" -> webClient.put()
-                        .uri(request.url())
-                        .headers(h -> request.headers().forEach(h::add))
-                        .bodyValue(request.body() != null ? request.body() : "")
-                        .retrieve();
-
-                case "DELETE" -> webClient.delete()
-                        .uri(request.url())
-                        .headers(h -> request.headers().forEach(h::add))
-                        .retrieve();
-
+            method = switch (request.method().toUpperCase()) {
+                case "GET", "POST", "PUT", "DELETE" -> HttpMethod.valueOf(request.method().toUpperCase());
                 default -> throw new IllegalArgumentException("Método HTTP não suportado: " + request.method());
             };
+        } catch (Exception e) {
+            log.error("Requisição HTTP inválida: {}", e.getMessage());
+            return Mono.just(new Response(false, "Erro: " + e.getMessage(), null, 400));
+        }
 
-            String responseBody = responseSpec.bodyToMono(String.class).block();
+        // Cache apenas para GET com tenant definido (escopo privado) e sem no-cache pedido pelo agente
+        String tenant = tenantContext.hasTenant() ? tenantContext.getCurrentTenant() : null;
+        String cacheKey = method == HttpMethod.GET && tenant != null && responseCache.isEnabled()
+                && !bypassesCache(request.headers())
+                ? responseCache.key(tenant, uri, request.headers())
+                : null;
+        HttpResponseCache.Entry cached = cacheKey != null ? responseCache.get(cacheKey) : null;
 
-            return new Response(true, "Requisição executada com sucesso", responseBody, 200);
+        if (cached != null && cached.isFresh()) {
+            responseCache.record("hit");
+            return Mono.just(new Response(true, "Requisição atendida pelo cache", cached.body(), cached.statusCode()));
+        }
 
-        } catch (Exception e) {
-            log.error("Erro na requisição HTTP: {}", e.getMessage(), e);
-            return new Response(false, "Erro: " + e.getMessage(), null, 500);
+        WebClient.RequestBodySpec spec = webClient.method(method)
+                .uri(uri)
+                .headers(h -> {
+                    if (request.headers() != null) {
+                        request.headers().forEach(h::add);
+                    }
+                    // Entrada expirada com validadores: requisição condicional (304 reaproveita o corpo)
+                    if (cached != null && cached.etag() != null) {
+                        h.set(HttpHeaders.IF_NONE_MATCH, cached.etag());
+                    }
+                    if (cached != null && cached.lastModified() != null) {
+                        h.set(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified());
+                    }
+                });
+
+        WebClient.RequestHeadersSpec<?> exchange = method == HttpMethod.POST || method == HttpMethod.PUT
+                ? spec.bodyValue(request.body() != null ? request.body() : "")
+                : spec;
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        Duration cacheTtl = cacheTtls.get(uri.getHost());
+
+        return exchange.exchangeToMono(response -> readResponse(response, cacheKey, cached, cacheTtl))
+                .timeout(requestTimeout)
+                .onErrorResume(e -> {
+                    int status = isTimeout(e) ? 504 : 502;
+                    log.error("Erro na requisição HTTP {} {}: {}", method, uri, e.getMessage());
+                    return Mono.just(new Response(false, "Erro: " + describe(e), null, status));
+                })
+                .doOnNext(response -> sample.stop(Timer.builder("agent.http.tool.latency")
+                        .tag("domain", rule)
+                        .tag("method", method.name())
+                        .tag("status", String.valueOf(response.statusCode()))
+                        // Histograma por regra da allowlist que permitiu a requisição (não pelo host,
+                        // que com curingas como *.example.com não tem cardinalidade limitada)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)));
+    }
+
+    // Acumula até maxResponseBytes e cancela o restante do corpo (a conexão é descartada, não devolvida ao pool)
+    private Mono<Response> readResponse(ClientResponse response, String cacheKey,
+                                        HttpResponseCache.Entry cached, Duration cacheTtl) {
+        int status = response.statusCode().value();
+        HttpHeaders headers = response.headers().asHttpHeaders();
+
+        if (status == 304 && cached != null) {
+            responseCache.record("revalidated");
+            HttpResponseCache.Entry refreshed = responseCache.revalidated(cacheKey, cached, headers, cacheTtl);
+            return response.releaseBody().thenReturn(new Response(true,
+                    "Requisição atendida pelo cache (revalidada)", refreshed.body(), refreshed.statusCode()));
+        }
+
+        Charset charset = response.headers().contentType()
+                .map(MediaType::getCharset)
+                .orElse(StandardCharsets.UTF_8);
+
+        BoundedBody body = new BoundedBody(maxResponseBytes);
+
+        return response.bodyToFlux(DataBuffer.class)
+                .doOnNext(buffer -> {
+                    try {
+                        body.append(buffer);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .takeUntil(buffer -> body.isTruncated())
+                .then(Mono.fromCallable(() -> {
+                    boolean success = response.statusCode().is2xxSuccessful();
+                    String message = success ? "Requisição executada com sucesso" : "Resposta HTTP " + status;
+                    if (body.isTruncated()) {
+                        message += " (corpo truncado em " + maxResponseBytes + " bytes)";
+                    }
+                    String decoded = body.decode(charset);
+
+                    // Corpo truncado não é a representação completa: não armazenar
+                    if (cacheKey != null) {
+                        responseCache.record("miss");
+                        if (!body.isTruncated()) {
+                            responseCache.store(cacheKey, status, decoded, headers, cacheTtl);
+                        }
+                    }
+                    return new Response(success, message, decoded, status);
+                }));
+    }
+
+    private String describe(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return "Timeout após " + requestTimeout.toMillis() + " ms";
+        }
+        return isTimeout(e) ? "Timeout de leitura/conexão: " + e.getMessage() : e.getMessage();
+    }
+
+    // Timeout total (Mono.timeout) ou do Netty (read/write/connect), inclusive quando vem como causa
+    // de WebClientRequestException
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable current = e; current != null; current = current.getCause()) {
+            if (current instanceof TimeoutException
+                    || current instanceof io.netty.handler.timeout.TimeoutException
+                    || current instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean bypassesCache(Map<String, String> headers) {
+        if (headers == null) {
+            return false;
         }
+
+        return headers.entrySet().stream()
+                .filter(header -> HttpHeaders.CACHE_CONTROL.equalsIgnoreCase(header.getKey()))
+                .anyMatch(header -> header.getValue() != null
+                        && (header.getValue().contains("no-cache") || header.getValue().contains("no-store")));
     }
 
-    public HttpTool withAllowedDomains(Set<String> domains) {
-        HttpTool newTool = new HttpTool(webClient);
+    public HttpTool withAllowedDomains(DomainMatcher domains) {
+        HttpTool newTool = copy();
         newTool.allowedDomains = domains;
         return newTool;
     }
 
+    // TTL por host (ex.: "api.github.com" -> PT5M), sobrepondo o frescor anunciado pelo servidor
+    public HttpTool withCacheTtls(Map<String, Duration> ttls) {
+        HttpTool newTool = copy();
+        newTool.cacheTtls = ttls;
+        return newTool;
+    }
+
+    private HttpTool copy() {
+        HttpTool newTool = new HttpTool(webClient, meterRegistry, responseCache, tenantContext);
+        newTool.allowedDomains = allowedDomains;
+        newTool.cacheTtls = cacheTtls;
+        newTool.requestTimeout = requestTimeout;
+        newTool.maxResponseBytes = maxResponseBytes;
+        return newTool;
+    }
+
+    private static class BoundedBody {
+
+        private final int maxBytes;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private boolean truncated;
+
+        BoundedBody(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        void append(DataBuffer buffer) {
+            int remaining = maxBytes - bytes.size();
+            int readable = buffer.readableByteCount();
+            byte[] chunk = new byte[Math.min(remaining, readable)];
+            buffer.read(chunk);
+            bytes.write(chunk, 0, chunk.length);
+            truncated = truncated || readable > remaining;
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        // Corte por bytes pode partir um caractere multibyte no fim; o decoder o substitui
+        String decode(Charset charset) {
+            return bytes.size() == 0 ? null : bytes.toString(charset);
+        }
+    }
+
     public record Request(
             String url,
             String method,
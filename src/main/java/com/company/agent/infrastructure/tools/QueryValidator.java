@@ -0,0 +1,243 @@
+package com.company.agent.infrastructure.tools;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Validação das queries da DatabaseTool feita uma vez por texto de query e cacheada (inclusive rejeições):
+// uma varredura léxica normaliza espaços/comentários fora de literais, conta placeholders '?' e
+// rejeita múltiplos statements. O texto normalizado é o que vai ao banco, então variações de
+// formatação compartilham o mesmo prepared statement no servidor.
+// Literais reconhecidos: '...', E'...' (escape por barra), "..." e dollar quoting do Postgres ($$...$$, $tag$...$tag$).
+// '??' é o escape do pgjdbc para um '?' literal e não conta como placeholder: os operadores jsonb
+// ?, ?| e ?& devem ser escritos ??, ??| e ??& (ou com jsonb_exists, jsonb_exists_any e jsonb_exists_all)
+@Component
+public class QueryValidator {
+
+    // Retorno de literalEnd para literal aberto até o fim da query
+    private static final int UNTERMINATED = -2;
+
+    private final Cache<String, Object> validated;
+
+    public QueryValidator(MeterRegistry meterRegistry,
+                          @Value("${agent.tools.database.validation-cache-size:2000}") long maxSize) {
+        this.validated = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, validated, "databaseToolQuery");
+    }
+
+    public ValidatedQuery validate(String sql) {
+        if (sql == null || sql.isBlank()) {
+            throw new SecurityException("Query vazia");
+        }
+
+        Object result = validated.get(sql, this::parse);
+        if (result instanceof SecurityException rejection) {
+            // Nova instância: a exceção cacheada não carrega stack trace de outra chamada
+            throw new SecurityException(rejection.getMessage());
+        }
+        return (ValidatedQuery) result;
+    }
+
+    private Object parse(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        int parameters = 0;
+        int length = sql.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = sql.charAt(i);
+
+            // Literal ou identificador entre aspas: copiado como está
+            int literalEnd = literalEnd(sql, i);
+            if (literalEnd == UNTERMINATED) {
+                return new SecurityException("Literal não terminado na query");
+            }
+
+            if (literalEnd > 0) {
+                normalized.append(sql, i, literalEnd);
+                i = literalEnd;
+            } else if (c == '?' && i + 1 < length && sql.charAt(i + 1) == '?') {
+                // Escape do pgjdbc ('??' = operador '?' do jsonb), enviado como está
+                normalized.append("??");
+                i += 2;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end;
+                appendSpace(normalized);
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return new SecurityException("Comentário não terminado na query");
+                }
+                i = end + 2;
+                appendSpace(normalized);
+            } else if (Character.isWhitespace(c)) {
+                appendSpace(normalized);
+                i++;
+            } else {
+                if (c == '?') {
+                    parameters++;
+                }
+                normalized.append(c);
+                i++;
+            }
+        }
+
+        // ';' finais são tolerados; qualquer outro fora de literal indica mais de um statement
+        String statement = normalized.toString().strip();
+        while (statement.endsWith(";")) {
+            statement = statement.substring(0, statement.length() - 1).strip();
+        }
+        if (containsOutsideQuotes(statement, ';')) {
+            return new SecurityException("Apenas um statement por query é permitido");
+        }
+
+        Kind kind = Kind.of(statement);
+        if (kind == null) {
+            return new SecurityException("Apenas SELECT, INSERT, UPDATE e DELETE são permitidos");
+        }
+
+        String pagedSql = kind == Kind.SELECT
+                // Paginação SQL:2008 (Postgres e Firebird 3+)
+                ? "SELECT * FROM (" + statement + ") agent_page OFFSET ? ROWS FETCH NEXT ? ROWS ONLY"
+                : null;
+
+        boolean ordered = kind == Kind.SELECT && hasTopLevelOrderBy(statement);
+        return new ValidatedQuery(kind, statement, pagedSql, parameters, sha256(statement), ordered);
+    }
+
+    // ORDER BY fora de literais e de parênteses: o de subqueries e de OVER (...) não ordena o resultado
+    private static boolean hasTopLevelOrderBy(String statement) {
+        int depth = 0;
+        for (int i = 0; i < statement.length(); i++) {
+            char c = statement.charAt(i);
+            int literalEnd = literalEnd(statement, i);
+            if (literalEnd > 0) {
+                i = literalEnd - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && isKeywordAt(statement, i, "ORDER BY")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // O texto já está normalizado: palavras separadas por um único espaço
+    private static boolean isKeywordAt(String statement, int index, String keyword) {
+        int end = index + keyword.length();
+        return statement.regionMatches(true, index, keyword, 0, keyword.length())
+                && (index == 0 || !isIdentifierPart(statement.charAt(index - 1)))
+                && (end == statement.length() || !isIdentifierPart(statement.charAt(end)));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static void appendSpace(StringBuilder builder) {
+        if (!builder.isEmpty() && builder.charAt(builder.length() - 1) != ' ') {
+            builder.append(' ');
+        }
+    }
+
+    // Fim (exclusivo) do literal que começa em 'start', -1 se não começa um literal ali
+    // ou UNTERMINATED se ele não é fechado
+    private static int literalEnd(String sql, int start) {
+        int length = sql.length();
+        char c = sql.charAt(start);
+
+        if (c == '\'' || c == '"') {
+            // Aspas duplicadas = escape; em E'...' a barra também escapa
+            boolean backslashEscapes = c == '\'' && start > 0
+                    && (sql.charAt(start - 1) == 'E' || sql.charAt(start - 1) == 'e')
+                    && (start < 2 || !isIdentifierPart(sql.charAt(start - 2)));
+            int end = start + 1;
+            while (end < length) {
+                char d = sql.charAt(end);
+                if (backslashEscapes && d == '\\') {
+                    end += 2;
+                } else if (d == c && end + 1 < length && sql.charAt(end + 1) == c) {
+                    end += 2;
+                } else if (d == c) {
+                    return end + 1;
+                } else {
+                    end++;
+                }
+            }
+            return UNTERMINATED;
+        }
+
+        // $tag$ (tag vazia ou identificador); $1 e identificadores com '$' não abrem literal
+        if (c == '$' && (start == 0 || !isIdentifierPart(sql.charAt(start - 1)))) {
+            int tagEnd = start + 1;
+            while (tagEnd < length && (Character.isLetter(sql.charAt(tagEnd)) || sql.charAt(tagEnd) == '_'
+                    || (tagEnd > start + 1 && Character.isDigit(sql.charAt(tagEnd))))) {
+                tagEnd++;
+            }
+            if (tagEnd < length && sql.charAt(tagEnd) == '$') {
+                String tag = sql.substring(start, tagEnd + 1);
+                int close = sql.indexOf(tag, tagEnd + 1);
+                return close < 0 ? UNTERMINATED : close + tag.length();
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean containsOutsideQuotes(String statement, char target) {
+        for (int i = 0; i < statement.length(); i++) {
+            int literalEnd = literalEnd(statement, i);
+            if (literalEnd > 0) {
+                i = literalEnd - 1;
+            } else if (statement.charAt(i) == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    public enum Kind {
+        SELECT, INSERT, UPDATE, DELETE;
+
+        static Kind of(String statement) {
+            for (Kind kind : values()) {
+                String keyword = kind.name();
+                if (statement.regionMatches(true, 0, keyword, 0, keyword.length())
+                        && statement.length() > keyword.length()
+                        && !Character.isLetterOrDigit(statement.charAt(keyword.length()))
+                        && statement.charAt(keyword.length()) != '_') {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    // sql: texto normalizado enviado ao banco; hash: identidade da query (cursor de paginação);
+    // ordered: SELECT com ORDER BY no nível externo (sem ele as páginas por OFFSET não são estáveis)
+    public record ValidatedQuery(Kind kind, String sql, String pagedSql, int parameterCount, String hash,
+                                 boolean ordered) {}
+}
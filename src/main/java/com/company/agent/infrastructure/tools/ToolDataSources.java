@@ -0,0 +1,227 @@
+package com.company.agent.infrastructure.tools;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Datasources usados pela DatabaseTool, isolados do pool da aplicação (tasks, flows): cada um com
+// pool próprio, transação somente leitura, timeout de statement e limite de queries simultâneas
+@Component
+@Slf4j
+public class ToolDataSources {
+
+    public static final String DEFAULT = "default";
+    public static final String FIREBIRD = "firebird";
+
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+    private final HikariDataSource defaultPool;
+    private final MeterRegistry meterRegistry;
+    private final Duration acquireTimeout;
+
+    public ToolDataSources(DataSourceProperties dataSourceProperties,
+                           @Qualifier("firebirdDataSource") ObjectProvider<DataSource> firebirdDataSource,
+                           MeterRegistry meterRegistry,
+                           @Value("${agent.tools.database.acquire-timeout:PT5S}") Duration acquireTimeout,
+                           @Value("${agent.tools.database.default.max-pool-size:4}") int defaultPoolSize,
+                           @Value("${agent.tools.database.default.statement-timeout:PT30S}") Duration defaultStatementTimeout,
+                           @Value("${agent.tools.database.default.max-concurrent:4}") int defaultMaxConcurrent,
+                           @Value("${agent.tools.database.default.read-only:true}") boolean defaultReadOnly,
+                           @Value("${agent.tools.database.default.prepare-threshold:1}") int prepareThreshold,
+                           @Value("${agent.tools.database.default.prepared-statement-cache-queries:256}") int preparedStatementCacheQueries,
+                           @Value("${agent.tools.database.firebird.statement-timeout:PT30S}") Duration firebirdStatementTimeout,
+                           @Value("${agent.tools.database.firebird.max-concurrent:4}") int firebirdMaxConcurrent,
+                           @Value("${agent.tools.database.firebird.read-only:true}") boolean firebirdReadOnly) {
+        this.meterRegistry = meterRegistry;
+        this.acquireTimeout = acquireTimeout;
+
+        // Mesmo banco da aplicação, mas em pool separado e pequeno: query lenta do agente não esgota o pool principal
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("agent-tool-" + DEFAULT);
+        config.setJdbcUrl(dataSourceProperties.determineUrl());
+        config.setUsername(dataSourceProperties.determineUsername());
+        config.setPassword(dataSourceProperties.determinePassword());
+        config.setMaximumPoolSize(defaultPoolSize);
+        config.setMinimumIdle(0);
+        config.setConnectionTimeout(acquireTimeout.toMillis());
+        config.setReadOnly(defaultReadOnly);
+        config.setMetricRegistry(meterRegistry);
+
+        if (Dialect.of(config.getJdbcUrl()) == Dialect.POSTGRES) {
+            // Cache de prepared statements do pgjdbc por conexão: a partir da N-ésima execução a query vira
+            // statement nomeado no servidor e o plano é reaproveitado (queries da tool já chegam parametrizadas)
+            config.addDataSourceProperty("prepareThreshold", prepareThreshold);
+            config.addDataSourceProperty("preparedStatementCacheQueries", preparedStatementCacheQueries);
+            // Parâmetros vêm do JSON do modelo como texto/número: com 'unspecified' o servidor infere o tipo
+            // pelo contexto (data, uuid, jsonb, enum) em vez de falhar com "operator does not exist: date = varchar"
+            config.addDataSourceProperty("stringtype", "unspecified");
+        }
+        this.defaultPool = new HikariDataSource(config);
+
+        register(DEFAULT, defaultPool, Dialect.of(config.getJdbcUrl()),
+                defaultStatementTimeout, defaultMaxConcurrent, defaultReadOnly);
+
+        DataSource firebird = firebirdDataSource.getIfAvailable();
+        if (firebird != null) {
+            register(FIREBIRD, firebird, Dialect.FIREBIRD,
+                    firebirdStatementTimeout, firebirdMaxConcurrent, firebirdReadOnly);
+        }
+
+        log.info("Datasources da DatabaseTool: {}", targets.keySet());
+    }
+
+    public Target get(String name) {
+        Target target = targets.get(name);
+        if (target == null) {
+            throw new IllegalArgumentException("Datasource não configurado: " + name + " (disponíveis: " + names() + ")");
+        }
+        return target;
+    }
+
+    public Set<String> names() {
+        return targets.keySet();
+    }
+
+    @PreDestroy
+    void close() {
+        defaultPool.close();
+    }
+
+    private void register(String name, DataSource dataSource, Dialect dialect,
+                          Duration statementTimeout, int maxConcurrent, boolean readOnly) {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+
+        Target target = new Target(name, dialect, new JdbcTemplate(dataSource), transaction,
+                statementTimeout, readOnly, maxConcurrent, new Semaphore(maxConcurrent));
+        targets.put(name, target);
+
+        Gauge.builder("agent.tools.database.in_use", target, t -> t.maxConcurrent() - t.permits().availablePermits())
+                .tag("datasource", name)
+                .register(meterRegistry);
+    }
+
+    public enum Dialect {
+        POSTGRES, FIREBIRD, OTHER;
+
+        static Dialect of(String jdbcUrl) {
+            if (jdbcUrl == null) {
+                return OTHER;
+            }
+            if (jdbcUrl.startsWith("jdbc:postgresql:")) {
+                return POSTGRES;
+            }
+            if (jdbcUrl.startsWith("jdbc:firebird")) {
+                return FIREBIRD;
+            }
+            return OTHER;
+        }
+    }
+
+    public final class Target {
+
+        private final String name;
+        private final Dialect dialect;
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate transaction;
+        private final Duration statementTimeout;
+        private final boolean readOnly;
+        private final int maxConcurrent;
+        private final Semaphore permits;
+
+        private Target(String name, Dialect dialect, JdbcTemplate jdbcTemplate, TransactionTemplate transaction,
+                       Duration statementTimeout, boolean readOnly, int maxConcurrent, Semaphore permits) {
+            this.name = name;
+            this.dialect = dialect;
+            this.jdbcTemplate = jdbcTemplate;
+            this.transaction = transaction;
+            this.statementTimeout = statementTimeout;
+            this.readOnly = readOnly;
+            this.maxConcurrent = maxConcurrent;
+            this.permits = permits;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public boolean readOnly() {
+            return readOnly;
+        }
+
+        // Segundos para Statement.setQueryTimeout (no Firebird 4+ o Jaybird aplica no servidor)
+        public int queryTimeoutSeconds() {
+            return (int) Math.max(1, statementTimeout.toSeconds());
+        }
+
+        int maxConcurrent() {
+            return maxConcurrent;
+        }
+
+        Semaphore permits() {
+            return permits;
+        }
+
+        // Executa dentro do limite de concorrência do datasource, em transação (somente leitura se configurado)
+        public <T> T execute(Function<JdbcTemplate, T> work) {
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Execução interrompida aguardando o datasource " + name);
+            }
+
+            if (!acquired) {
+                meterRegistry.counter("agent.tools.database.rejected", "datasource", name).increment();
+                throw new IllegalStateException("Datasource " + name + " saturado: "
+                        + maxConcurrent + " queries em execução");
+            }
+
+            long start = System.nanoTime();
+            String outcome = "success";
+            try {
+                return transaction.execute(status -> {
+                    if (dialect == Dialect.POSTGRES) {
+                        // Timeout no servidor restrito à transação (SET LOCAL)
+                        jdbcTemplate.queryForObject("SELECT set_config('statement_timeout', ?, true)", String.class,
+                                String.valueOf(statementTimeout.toMillis()));
+                    }
+                    return work.apply(jdbcTemplate);
+                });
+            } catch (RuntimeException e) {
+                outcome = "error";
+                throw e;
+            } finally {
+                permits.release();
+                Timer.builder("agent.tools.database.latency")
+                        .tag("datasource", name)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+-- V10__add_task_token_counts.sql
+-- Contagem de tokens por task (montagem de contexto com orçamento de tokens)
+
+ALTER TABLE tasks ADD COLUMN prompt_tokens INTEGER;
+ALTER TABLE tasks ADD COLUMN context_tokens INTEGER;
+ALTER TABLE tasks ADD COLUMN completion_tokens INTEGER;
+
+COMMENT ON COLUMN tasks.prompt_tokens IS 'Tokens de entrada (system + contexto RAG + prompt do usuário), contados localmente';
+COMMENT ON COLUMN tasks.context_tokens IS 'Tokens dos chunks RAG incluídos no prompt';
+COMMENT ON COLUMN tasks.completion_tokens IS 'Tokens da resposta do modelo';
@@ -0,0 +1,37 @@
+-- V11__create_email_outbox.sql
+-- Outbox de emails da EmailTool: a tool só grava a mensagem; o envio SMTP é feito em lotes pelo EmailDispatcher
+
+CREATE TABLE email_outbox (
+                              id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+                              tenant VARCHAR(100) NOT NULL,
+                              idempotency_key VARCHAR(200) NOT NULL,
+                              recipients JSONB NOT NULL,
+                              cc JSONB,
+                              bcc JSONB,
+                              subject VARCHAR(1000) NOT NULL,
+                              body TEXT NOT NULL,
+                              status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+                              attempts INTEGER NOT NULL DEFAULT 0,
+                              next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                              last_error TEXT,
+                              created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                              updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                              sent_at TIMESTAMP,
+
+                              CONSTRAINT email_outbox_status_check CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'FAILED')),
+                              CONSTRAINT uk_email_outbox_idempotency UNIQUE (tenant, idempotency_key)
+);
+
+-- Próximos envios devidos (parcial: só o que ainda falta enviar)
+CREATE INDEX idx_email_outbox_due ON email_outbox(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_email_outbox_sending ON email_outbox(updated_at) WHERE status = 'SENDING';
+CREATE INDEX idx_email_outbox_finished ON email_outbox(updated_at) WHERE status IN ('SENT', 'FAILED');
+
+CREATE TRIGGER update_email_outbox_updated_at
+    BEFORE UPDATE ON email_outbox
+    FOR EACH ROW
+EXECUTE FUNCTION update_updated_at_column();
+
+COMMENT ON TABLE email_outbox IS 'Emails enfileirados pela EmailTool, enviados de forma assíncrona';
+COMMENT ON COLUMN email_outbox.idempotency_key IS 'Deduplicação por tenant enquanto a linha existir (ver agent.email.retention)';
+COMMENT ON COLUMN email_outbox.next_attempt_at IS 'Instante da próxima tentativa (backoff exponencial após falhas)';
@@ -0,0 +1,11 @@
+-- V12__semantic_cache_scoped_lookup.sql
+-- Cache semântico: busca exata dentro do escopo (tenant + fase + prompt) em vez do índice HNSW global,
+-- que devolvia só ef_search candidatos da tabela inteira e perdia os vizinhos do escopo
+
+DROP INDEX IF EXISTS idx_semantic_cache_embedding;
+DROP INDEX IF EXISTS idx_semantic_cache_scope;
+
+-- Escopo + entradas mais recentes primeiro (limite agent.semantic-cache.max-scope-rows)
+CREATE INDEX idx_semantic_cache_scope ON semantic_cache(tenant, phase_name, system_prompt_hash, created_at DESC);
+
+COMMENT ON COLUMN semantic_cache.system_prompt_hash IS 'SHA-256 do template do prompt do sistema + variáveis estáveis da fase';
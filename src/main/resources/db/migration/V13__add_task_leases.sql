@@ -0,0 +1,11 @@
+-- V13__add_task_leases.sql
+-- Lease renovado por heartbeat do nó que executa a task: só leases vencidos voltam para a fila
+
+ALTER TABLE tasks ADD COLUMN lease_owner VARCHAR(100);
+ALTER TABLE tasks ADD COLUMN lease_expires_at TIMESTAMP;
+
+COMMENT ON COLUMN tasks.lease_owner IS 'Nó que executa a task (renova o lease enquanto estiver vivo)';
+COMMENT ON COLUMN tasks.lease_expires_at IS 'Fim do lease; RUNNING com lease vencido volta para PENDING';
+
+-- Recuperação de tasks cujo nó parou de renovar o lease
+CREATE INDEX idx_tasks_running_lease ON tasks(lease_expires_at) WHERE status = 'RUNNING';
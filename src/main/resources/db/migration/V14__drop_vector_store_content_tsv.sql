@@ -0,0 +1,6 @@
+-- V14__drop_vector_store_content_tsv.sql
+-- Bancos que aplicaram a versão anterior da V9 (coluna tsvector STORED): a busca textual passa a usar o
+-- índice de expressão criado pelo VectorIndexManager. DROP COLUMN só altera o catálogo (sem reescrita)
+-- e remove junto o índice GIN dependente
+
+ALTER TABLE vector_store DROP COLUMN IF EXISTS content_tsv;
@@ -32,12 +32,12 @@ CREATE INDEX idx_tasks_tenant_status ON tasks(tenant, status);
 
 -- Trigger para atualizar updated_at automaticamente
 CREATE OR REPLACE FUNCTION update_updated_at_column()
-    RETURNS TRIGGER AS $
+    RETURNS TRIGGER AS $$
 BEGIN
 NEW.updated_at = CURRENT_TIMESTAMP;
 RETURN NEW;
 END;
-$ LANGUAGE plpgsql;
+$$ LANGUAGE plpgsql;
 
 CREATE TRIGGER update_tasks_updated_at
     BEFORE UPDATE ON tasks
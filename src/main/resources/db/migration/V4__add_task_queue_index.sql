@@ -0,0 +1,8 @@
+-- V4__add_task_queue_index.sql
+-- Índices de suporte à fila persistente de tasks
+
+-- Reivindicação das tasks pendentes mais antigas (SELECT ... FOR UPDATE SKIP LOCKED)
+CREATE INDEX idx_tasks_pending_created ON tasks(created_at) WHERE status = 'PENDING';
+
+-- Recuperação de tasks presas em RUNNING após queda de um nó
+CREATE INDEX idx_tasks_running_started ON tasks(started_at) WHERE status = 'RUNNING';
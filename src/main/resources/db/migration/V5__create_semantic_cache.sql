@@ -0,0 +1,27 @@
+-- V5__create_semantic_cache.sql
+-- Cache semântico de respostas: embeddings de prompts de tasks bem-sucedidas
+
+CREATE EXTENSION IF NOT EXISTS vector;
+
+CREATE TABLE semantic_cache (
+                                id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+                                task_id UUID NOT NULL,
+                                tenant VARCHAR(100) NOT NULL,
+                                phase_name VARCHAR(100) NOT NULL,
+                                system_prompt_hash VARCHAR(64) NOT NULL,
+                                embedding vector(1536) NOT NULL,
+                                created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                expires_at TIMESTAMP NOT NULL,
+
+                                CONSTRAINT fk_semantic_cache_task FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE
+);
+
+-- Escopo da busca: tenant + fase + prompt do sistema renderizado
+CREATE INDEX idx_semantic_cache_scope ON semantic_cache(tenant, phase_name, system_prompt_hash);
+CREATE INDEX idx_semantic_cache_expires_at ON semantic_cache(expires_at);
+CREATE INDEX idx_semantic_cache_embedding ON semantic_cache USING hnsw (embedding vector_cosine_ops);
+
+COMMENT ON TABLE semantic_cache IS 'Cache semântico de respostas do agente por tenant/fase';
+COMMENT ON COLUMN semantic_cache.task_id IS 'Task SUCCEEDED cujo resultado é reutilizado';
+COMMENT ON COLUMN semantic_cache.system_prompt_hash IS 'SHA-256 do prompt do sistema renderizado';
+COMMENT ON COLUMN semantic_cache.expires_at IS 'Instante a partir do qual a entrada deixa de ser usada';
@@ -0,0 +1,16 @@
+-- V6__create_embedding_cache.sql
+-- Camada persistente (opcional) do cache de embeddings
+
+CREATE TABLE embedding_cache (
+                                 content_hash VARCHAR(64) NOT NULL,
+                                 model VARCHAR(100) NOT NULL,
+                                 embedding vector NOT NULL,
+                                 created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+                                 CONSTRAINT embedding_cache_pk PRIMARY KEY (content_hash, model)
+);
+
+CREATE INDEX idx_embedding_cache_created_at ON embedding_cache(created_at);
+
+COMMENT ON TABLE embedding_cache IS 'Embeddings já calculados, por hash do conteúdo e modelo';
+COMMENT ON COLUMN embedding_cache.content_hash IS 'SHA-256 do modelo + texto embedado';
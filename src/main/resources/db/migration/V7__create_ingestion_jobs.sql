@@ -0,0 +1,35 @@
+-- V7__create_ingestion_jobs.sql
+-- Jobs de ingestão de documentos na base de conhecimento (vector_store)
+
+CREATE TABLE ingestion_jobs (
+                                id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+                                tenant VARCHAR(100) NOT NULL,
+                                phase VARCHAR(100) NOT NULL,
+                                source_id VARCHAR(500) NOT NULL,
+                                file_name VARCHAR(500),
+                                content_type VARCHAR(100),
+                                spool_path TEXT NOT NULL,
+                                status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+                                total_units INTEGER,
+                                processed_units INTEGER NOT NULL DEFAULT 0,
+                                chunks_written BIGINT NOT NULL DEFAULT 0,
+                                error_message TEXT,
+                                created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                started_at TIMESTAMP,
+                                completed_at TIMESTAMP,
+
+                                CONSTRAINT ingestion_jobs_status_check CHECK (status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED'))
+);
+
+CREATE INDEX idx_ingestion_jobs_tenant_created ON ingestion_jobs(tenant, created_at DESC);
+CREATE INDEX idx_ingestion_jobs_status ON ingestion_jobs(status) WHERE status IN ('PENDING', 'RUNNING');
+
+CREATE TRIGGER update_ingestion_jobs_updated_at
+    BEFORE UPDATE ON ingestion_jobs
+    FOR EACH ROW
+EXECUTE FUNCTION update_updated_at_column();
+
+COMMENT ON TABLE ingestion_jobs IS 'Jobs de ingestão de documentos no vector_store';
+COMMENT ON COLUMN ingestion_jobs.processed_units IS 'Páginas/blocos já gravados; ponto de retomada do job';
+COMMENT ON COLUMN ingestion_jobs.spool_path IS 'Cópia local do arquivo enviado, removida ao concluir';
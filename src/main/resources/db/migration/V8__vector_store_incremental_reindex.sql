@@ -0,0 +1,29 @@
+-- V8__vector_store_incremental_reindex.sql
+-- Reindexação incremental: vector_store passa a ser gerenciada pelas migrations
+
+CREATE EXTENSION IF NOT EXISTS vector;
+
+-- Mesmo schema criado pelo PgVectorStore (initializeSchema vira no-op)
+CREATE TABLE IF NOT EXISTS vector_store (
+                              id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+                              content TEXT,
+                              metadata JSON,
+                              embedding vector(1536)
+);
+
+CREATE INDEX IF NOT EXISTS spring_ai_vector_index ON vector_store USING hnsw (embedding vector_cosine_ops);
+
+-- Chunks de uma fonte (diff e remoção de órfãos na reingestão)
+CREATE INDEX IF NOT EXISTS idx_vector_store_tenant_source
+    ON vector_store ((metadata->>'tenant'), (metadata->>'source'));
+
+-- Contadores de chunks reaproveitados e removidos por job
+ALTER TABLE ingestion_jobs ADD COLUMN chunks_unchanged BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ingestion_jobs ADD COLUMN chunks_deleted BIGINT NOT NULL DEFAULT 0;
+
+COMMENT ON COLUMN ingestion_jobs.chunks_written IS 'Chunks novos ou alterados (embedados e gravados)';
+COMMENT ON COLUMN ingestion_jobs.chunks_unchanged IS 'Chunks com content_hash já presente na fonte (sem novo embedding)';
+COMMENT ON COLUMN ingestion_jobs.chunks_deleted IS 'Chunks órfãos removidos ao concluir a reingestão';
+
+-- Verificação de job ativo por fonte no submit
+CREATE INDEX idx_ingestion_jobs_tenant_source ON ingestion_jobs(tenant, source_id);
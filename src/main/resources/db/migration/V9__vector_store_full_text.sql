@@ -0,0 +1,8 @@
+-- V9__vector_store_full_text.sql
+-- Busca por palavra-chave na vector_store (perna textual da recuperação híbrida)
+
+-- Sem DDL aqui: numa vector_store já grande, uma coluna tsvector STORED reescreveria a tabela sob
+-- ACCESS EXCLUSIVE e os índices GIN sem CONCURRENTLY bloqueariam escrita durante toda a migration.
+-- Os índices de expressão (to_tsvector 'simple' e trigramas, pg_trgm da V3) são criados com
+-- CREATE INDEX CONCURRENTLY pelo VectorIndexManager na subida da aplicação, como os índices HNSW
+SELECT 1;
@@ -0,0 +1,161 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.PhaseContext;
+import com.company.agent.domain.Task;
+import com.company.agent.infrastructure.ai.RagAdvisorConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContextAssemblerTest {
+
+    private static final String TEMPLATE = """
+            Context: {context}
+
+            Question: {input}
+            """;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ContextAssembler assembler;
+
+    @BeforeEach
+    void setUp() {
+        assembler = new ContextAssembler(new TemplateEngine(), meterRegistry, "gpt-4o-mini");
+        ReflectionTestUtils.setField(assembler, "windowTokens", 128000);
+        ReflectionTestUtils.setField(assembler, "maxCompletionTokens", 2000);
+        ReflectionTestUtils.setField(assembler, "defaultBudget", 16000);
+        ReflectionTestUtils.setField(assembler, "reserveTokens", 0);
+        ReflectionTestUtils.setField(assembler, "minChunkTokens", 16);
+    }
+
+    @Test
+    void fillsTemplatePlaceholdersInASinglePass() {
+        String filled = ContextAssembler.fillTemplate("C: {context} Q: {input} {other}",
+                "chunk citando {input}", "pergunta sobre {context}");
+
+        assertThat(filled).isEqualTo("C: chunk citando {input} Q: pergunta sobre {context} {other}");
+    }
+
+    @Test
+    void keepsChunksInRankingOrderTrimmingTheFirstThatDoesNotFit() {
+        String first = words("alpha", 100);
+        String second = words("beta", 1000);
+        String third = words("gamma", 20);
+        Task task = task("Qual é o status?");
+
+        String systemPrompt = assembler.assemble(task, phase(16000, null, Map.of()), rag(List.of())).systemPrompt();
+        int overhead = assembler.countTokens(systemPrompt)
+                + assembler.countTokens(ContextAssembler.fillTemplate(TEMPLATE, "", task.getPrompt()));
+        // Espaço para o primeiro chunk inteiro e ~300 tokens do segundo
+        int budget = overhead + assembler.countTokens(first) + 300;
+
+        ContextAssembler.AssembledContext context = assembler.assemble(task, phase(budget, null, Map.of()),
+                rag(List.of(new Document(first), new Document(second), new Document(third))));
+
+        assertThat(context.userText()).contains(first).contains("beta").doesNotContain("gamma");
+        assertThat(context.userText()).doesNotContain(second);
+        assertThat(meterRegistry.get("agent.context.truncations").tag("part", "chunks").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void skipsRetrievalWhenNoChunkWouldFit() {
+        Task task = task("Resuma o relatório.");
+        int promptOnly = assembler.assemble(task, phase(16000, null, Map.of()), rag(List.of())).promptTokens();
+
+        AtomicInteger retrievals = new AtomicInteger();
+        RagAdvisorConfig.RagRetrieval rag = new RagAdvisorConfig.RagRetrieval(query -> {
+            retrievals.incrementAndGet();
+            return List.of(new Document(words("delta", 50)));
+        }, TEMPLATE);
+
+        // Orçamento exato de system + prompt: o overhead do template não conta quando não há chunks
+        ContextAssembler.AssembledContext context = assembler.assemble(task, phase(promptOnly, null, Map.of()), rag);
+
+        assertThat(retrievals.get()).isEqualTo(0);
+        assertThat(context.userText()).isEqualTo(task.getPrompt());
+        assertThat(context.contextTokens()).isEqualTo(0);
+    }
+
+    @Test
+    void truncatesUnlistedVariablesBeforeLowPriorityOnes() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("history", words("hist", 2000));
+        variables.put("notes", words("note", 200));
+        variables.put("rules", words("rule", 50));
+        variables.put(ContextAssembler.PRIORITY_VARIABLE, List.of("rules", "notes"));
+        Task task = task("Continue.");
+
+        int budget = 600;
+        ContextAssembler.AssembledContext context = assembler.assemble(task,
+                phase(budget, "{{rules}}\n{{notes}}\n{{history}}", variables), rag(List.of()));
+
+        assertThat(context.systemPrompt()).contains(words("rule", 50)).contains(words("note", 200));
+        assertThat(context.systemPrompt()).doesNotContain(words("hist", 2000));
+        assertThat(context.promptTokens()).isLessThanOrEqualTo(budget);
+    }
+
+    @Test
+    void truncatesListedVariablesFromLowestPriority() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("notes", words("note", 400));
+        variables.put("rules", words("rule", 100));
+        variables.put(ContextAssembler.PRIORITY_VARIABLE, List.of("rules", "notes"));
+
+        int budget = 300;
+        ContextAssembler.AssembledContext context = assembler.assemble(task("Continue."),
+                phase(budget, "{{rules}}\n{{notes}}", variables), rag(List.of()));
+
+        assertThat(context.systemPrompt()).startsWith(words("rule", 100));
+        assertThat(context.systemPrompt()).doesNotContain(words("note", 400));
+        assertThat(context.promptTokens()).isLessThanOrEqualTo(budget);
+    }
+
+    @Test
+    void rejectsPromptsThatCannotFitTheBudget() {
+        Task task = task(words("prompt", 500));
+
+        assertThatThrownBy(() -> assembler.assemble(task, phase(100, null, Map.of()), rag(List.of())))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("orçamento de tokens");
+    }
+
+    private static String words(String word, int count) {
+        return (word + " ").repeat(count).strip();
+    }
+
+    private static Task task(String prompt) {
+        return Task.builder()
+                .id(UUID.randomUUID())
+                .tenant("acme")
+                .prompt(prompt)
+                .build();
+    }
+
+    private static PhaseContext phase(int budget, String systemPromptTemplate, Map<String, Object> variables) {
+        Map<String, Object> phaseVariables = new HashMap<>(variables);
+        phaseVariables.put(ContextAssembler.BUDGET_VARIABLE, budget);
+        return PhaseContext.builder()
+                .phaseName("analysis")
+                .systemPromptTemplate(systemPromptTemplate)
+                .variables(phaseVariables)
+                .build();
+    }
+
+    private static RagAdvisorConfig.RagRetrieval rag(List<Document> documents) {
+        DocumentRetriever retriever = query -> documents;
+        return new RagAdvisorConfig.RagRetrieval(retriever, TEMPLATE);
+    }
+}
@@ -0,0 +1,135 @@
+package com.company.agent.application;
+
+import com.company.agent.domain.EmailMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailDispatcherTest {
+
+    private final EmailOutbox outbox = mock(EmailOutbox.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<JavaMailSender> mailSenderProvider = mock(ObjectProvider.class);
+    private final EmailDispatcher dispatcher = new EmailDispatcher(outbox, mailSenderProvider, new SimpleMeterRegistry(), 1);
+    private SmtpStub smtp;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "from", "agent@localhost");
+        ReflectionTestUtils.setField(dispatcher, "maxBatchSize", 50);
+
+        smtp = new SmtpStub();
+        when(mailSenderProvider.getIfAvailable()).thenReturn(mailSender(smtp.port()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        dispatcher.shutdown();
+        smtp.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendsTheBatchOverOneConnection() {
+        EmailMessage first = message("ana@example.com");
+        EmailMessage second = message("bruno@example.com");
+        when(outbox.claimNext(anyInt())).thenReturn(List.of(first, second), List.of());
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<List<EmailMessage>> sent = ArgumentCaptor.forClass(List.class);
+        verify(outbox, timeout(5000)).markSent(sent.capture());
+        assertThat(sent.getValue()).containsExactlyInAnyOrder(first, second);
+        assertThat(smtp.delivered()).hasSize(2);
+        assertThat(smtp.connections()).isEqualTo(1);
+        verify(outbox, never()).markFailed(any(), anyString(), anyBoolean());
+    }
+
+    @Test
+    void recipientRejectedWith5xxIsPermanent() {
+        smtp.replyToRecipient("unknown@example.com", "550 5.1.1 User unknown");
+        EmailMessage rejected = message("unknown@example.com");
+        EmailMessage delivered = message("ana@example.com");
+        when(outbox.claimNext(anyInt())).thenReturn(List.of(rejected, delivered), List.of());
+
+        dispatcher.dispatch();
+
+        verify(outbox, timeout(5000)).markFailed(eq(rejected), anyString(), eq(true));
+        verify(outbox, timeout(5000)).markSent(List.of(delivered));
+    }
+
+    @Test
+    void recipientDeferredWith4xxIsRetried() {
+        smtp.replyToRecipient("full@example.com", "452 4.2.2 Mailbox full");
+        EmailMessage deferred = message("full@example.com");
+        when(outbox.claimNext(anyInt())).thenReturn(List.of(deferred), List.of());
+
+        dispatcher.dispatch();
+
+        verify(outbox, timeout(5000)).markFailed(eq(deferred), anyString(), eq(false));
+        verify(outbox, never()).markSent(anyList());
+    }
+
+    @Test
+    void unreachableServerFailsTheWholeBatchTemporarily() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        when(mailSenderProvider.getIfAvailable()).thenReturn(mailSender(closedPort));
+        EmailMessage first = message("ana@example.com");
+        EmailMessage second = message("bruno@example.com");
+        when(outbox.claimNext(anyInt())).thenReturn(List.of(first, second), List.of());
+
+        dispatcher.dispatch();
+
+        verify(outbox, timeout(5000)).markFailed(eq(first), anyString(), eq(false));
+        verify(outbox, timeout(5000)).markFailed(eq(second), anyString(), eq(false));
+    }
+
+    private static JavaMailSender mailSender(int port) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(port);
+        sender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        sender.getJavaMailProperties().put("mail.smtp.timeout", "2000");
+        return sender;
+    }
+
+    private static EmailMessage message(String to) {
+        return EmailMessage.builder()
+                .id(UUID.randomUUID())
+                .tenant("acme")
+                .idempotencyKey(UUID.randomUUID().toString())
+                .to(List.of(to))
+                .subject("Relatório")
+                .body("Segue o relatório.")
+                .status(EmailMessage.Status.SENDING)
+                .build();
+    }
+}
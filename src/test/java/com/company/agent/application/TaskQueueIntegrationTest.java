@@ -0,0 +1,167 @@
+package com.company.agent.application;
+
+import com.company.agent.config.DatabaseConfig;
+import com.company.agent.domain.Task;
+import com.company.agent.domain.TaskRepository;
+import com.company.agent.infrastructure.persistence.JpaTaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Reivindicação concorrente contra um Postgres real: FOR UPDATE SKIP LOCKED não existe no H2
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=none")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DatabaseConfig.class, JpaTaskRepository.class, TaskQueue.class, TaskLeases.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers
+class TaskQueueIntegrationTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private TaskQueue taskQueue;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM tasks");
+    }
+
+    @Test
+    void concurrentClaimsSkipRowsLockedByAnotherTransaction() throws Exception {
+        Set<UUID> pending = new HashSet<>(createPending(10));
+        CountDownLatch firstClaimed = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+
+        // Primeira transação reivindica 5 e segura os locks até o segundo nó terminar
+        CompletableFuture<List<Task>> first = CompletableFuture.supplyAsync(() ->
+                new TransactionTemplate(transactionManager).execute(status -> {
+                    List<Task> claimed = taskQueue.claimNext(5);
+                    firstClaimed.countDown();
+                    await(releaseFirst);
+                    return claimed;
+                }));
+        assertThat(firstClaimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Sem SKIP LOCKED esta chamada bloquearia até o commit da primeira
+        List<Task> second = CompletableFuture.supplyAsync(() -> taskQueue.claimNext(10))
+                .get(10, TimeUnit.SECONDS);
+        releaseFirst.countDown();
+        List<Task> firstClaims = first.get(10, TimeUnit.SECONDS);
+
+        assertThat(firstClaims).hasSize(5);
+        assertThat(second).hasSize(5);
+
+        Set<UUID> claimed = new HashSet<>();
+        firstClaims.forEach(task -> claimed.add(task.getId()));
+        second.forEach(task -> claimed.add(task.getId()));
+        assertThat(claimed).isEqualTo(pending);
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM tasks WHERE status = 'RUNNING' AND lease_owner IS NOT NULL " +
+                        "AND lease_expires_at > now()", Integer.class)).isEqualTo(10);
+    }
+
+    @Test
+    void claimByIdSkipsATaskLockedByAnotherTransaction() throws Exception {
+        UUID taskId = createPending(1).get(0);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Optional<Task>> holder = CompletableFuture.supplyAsync(() ->
+                new TransactionTemplate(transactionManager).execute(status -> {
+                    Optional<Task> claimed = taskQueue.claim(taskId);
+                    locked.countDown();
+                    await(release);
+                    return claimed;
+                }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        Optional<Task> competing = CompletableFuture.supplyAsync(() -> taskQueue.claim(taskId))
+                .get(10, TimeUnit.SECONDS);
+        release.countDown();
+
+        assertThat(competing).isEmpty();
+        assertThat(holder.get(10, TimeUnit.SECONDS)).isPresent();
+        assertThat(taskQueue.claim(taskId)).isEmpty();
+    }
+
+    @Test
+    void requeuesOnlyTasksWhoseLeaseExpired() {
+        List<UUID> ids = createPending(2);
+        List<Task> claimed = taskQueue.claimNext(2);
+        assertThat(claimed).hasSize(2);
+
+        // O nó do primeiro parou de renovar o lease
+        jdbcTemplate.update("UPDATE tasks SET lease_expires_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)), ids.get(0));
+
+        assertThat(taskQueue.requeueStale()).isEqualTo(1);
+        assertThat(taskRepository.findById(ids.get(0)).orElseThrow().getStatus()).isEqualTo(Task.Status.PENDING);
+        assertThat(taskRepository.findById(ids.get(1)).orElseThrow().getStatus()).isEqualTo(Task.Status.RUNNING);
+    }
+
+    private List<UUID> createPending(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> taskRepository.save(Task.builder()
+                        .prompt("task " + i)
+                        .status(Task.Status.PENDING)
+                        .mode(Task.Mode.AUTONOMOUS)
+                        .tenant("acme")
+                        .build()).getId())
+                .toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.company.agent.infrastructure.ai;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.Query;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class MmrRerankerTest {
+
+    private static final String QUERY = "status do contrato";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final MmrReranker reranker = new MmrReranker(jdbcTemplate, embeddingModel);
+
+    // 'duplicate' é quase igual a 'best'; 'diverse' é menos relevante, mas diferente de 'best'
+    private final Document best = document(0.9f, 0.3f, 0f);
+    private final Document duplicate = document(0.9f, 0.32f, 0.02f);
+    private final Document diverse = document(0.8f, -0.6f, 0f);
+
+    @BeforeEach
+    void setUp() {
+        when(embeddingModel.embed(QUERY)).thenReturn(new float[]{1f, 0f, 0f});
+        ReflectionTestUtils.setField(reranker, "lambda", 0.7);
+    }
+
+    @Test
+    void prefersADiverseChunkOverANearDuplicate() {
+        List<Document> result = reranker.rerank(new Query(QUERY), List.of(best, duplicate, diverse), 2);
+
+        assertThat(result).containsExactly(best, diverse);
+    }
+
+    @Test
+    void lambdaOneKeepsPureRelevanceOrder() {
+        ReflectionTestUtils.setField(reranker, "lambda", 1.0);
+
+        List<Document> result = reranker.rerank(new Query(QUERY), List.of(diverse, duplicate, best), 3);
+
+        assertThat(result).containsExactly(best, duplicate, diverse);
+    }
+
+    @Test
+    void usesEmbeddingsReturnedByTheVectorSearch() {
+        assertThat(reranker.usesEmbeddings()).isTrue();
+
+        reranker.rerank(new Query(QUERY), List.of(best, duplicate, diverse), 2);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void loadsOnlyMissingEmbeddingsFromTheVectorStore() {
+        Document keywordOnly = new Document(UUID.randomUUID().toString(), "chunk só da busca textual", new HashMap<>());
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("id")).thenReturn(keywordOnly.getId());
+            when(rs.getString("embedding")).thenReturn("[0.0,1.0,0.0]");
+            invocation.<RowCallbackHandler>getArgument(2).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+
+        List<Document> result = reranker.rerank(new Query(QUERY), List.of(best, keywordOnly, duplicate), 3);
+
+        ArgumentCaptor<SqlParameterSource> parameters = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).query(anyString(), parameters.capture(), any(RowCallbackHandler.class));
+        assertThat(((MapSqlParameterSource) parameters.getValue()).getValue("ids"))
+                .isEqualTo(List.of(UUID.fromString(keywordOnly.getId())));
+        assertThat(result).containsExactlyInAnyOrder(best, keywordOnly, duplicate);
+    }
+
+    @Test
+    void returnsSingleCandidateUntouched() {
+        List<Document> candidates = List.of(best);
+
+        assertThat(reranker.rerank(new Query(QUERY), candidates, 3)).isSameAs(candidates);
+        verifyNoInteractions(embeddingModel, jdbcTemplate);
+    }
+
+    private static Document document(float... embedding) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(PgVectorSearch.EMBEDDING_METADATA, embedding);
+        return new Document(UUID.randomUUID().toString(), "chunk", metadata);
+    }
+}
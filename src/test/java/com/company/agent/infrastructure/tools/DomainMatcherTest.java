@@ -0,0 +1,92 @@
+package com.company.agent.infrastructure.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DomainMatcherTest {
+
+    private final DomainMatcher matcher = DomainMatcher.compile(List.of(
+            "https://api.github.com",
+            "https://*.example.com",
+            "http://localhost:8080",
+            "https://docs.company.com/v1/",
+            "status.company.com"));
+
+    @Test
+    void matchesExactHostCaseInsensitivelyOnTheDefaultPort() {
+        assertThat(matcher.match(URI.create("https://api.github.com/repos"))).isEqualTo("https://api.github.com");
+        assertThat(matcher.match(URI.create("https://API.GitHub.com/repos"))).isEqualTo("https://api.github.com");
+        assertThat(matcher.match(URI.create("https://api.github.com:443/repos"))).isEqualTo("https://api.github.com");
+        assertThat(matcher.match(URI.create("https://api.github.com:8443/repos"))).isNull();
+        assertThat(matcher.match(URI.create("http://api.github.com/repos"))).isNull();
+    }
+
+    @Test
+    void wildcardMatchesSubdomainsOnly() {
+        assertThat(matcher.match(URI.create("https://a.example.com/x"))).isEqualTo("https://*.example.com");
+        assertThat(matcher.match(URI.create("https://a.b.EXAMPLE.com/x"))).isEqualTo("https://*.example.com");
+        assertThat(matcher.match(URI.create("https://example.com/x"))).isNull();
+        assertThat(matcher.match(URI.create("https://badexample.com/x"))).isNull();
+    }
+
+    @Test
+    void explicitPortMustMatch() {
+        assertThat(matcher.match(URI.create("http://localhost:8080/health"))).isEqualTo("http://localhost:8080");
+        assertThat(matcher.match(URI.create("http://localhost/health"))).isNull();
+        assertThat(matcher.match(URI.create("http://localhost:9090/health"))).isNull();
+    }
+
+    @Test
+    void patternWithoutSchemeAcceptsHttpAndHttps() {
+        assertThat(matcher.matches(URI.create("http://status.company.com/"))).isTrue();
+        assertThat(matcher.matches(URI.create("https://status.company.com/"))).isTrue();
+        assertThat(matcher.matches(URI.create("ftp://status.company.com/"))).isFalse();
+    }
+
+    @Test
+    void pathPrefixRespectsSegmentBoundaries() {
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1"))).isTrue();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/guide"))).isTrue();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v10"))).isFalse();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/admin"))).isFalse();
+    }
+
+    @Test
+    void rejectsTraversalOutOfThePathPrefix() {
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/../admin"))).isFalse();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/./guide"))).isFalse();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/..;/admin"))).isFalse();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/%2e%2E/admin"))).isFalse();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1%2Fadmin"))).isFalse();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/%5Cadmin"))).isFalse();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/../v1/../admin").normalize())).isFalse();
+    }
+
+    @Test
+    void acceptsSegmentsThatOnlyStartWithDots() {
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/.well-known"))).isTrue();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/..."))).isTrue();
+        assertThat(matcher.matches(URI.create("https://docs.company.com/v1/./guide").normalize())).isTrue();
+    }
+
+    @Test
+    void emptyAllowlistDeniesEverything() {
+        assertThat(DomainMatcher.compile(List.of()).matches(URI.create("https://api.github.com"))).isFalse();
+        assertThat(DomainMatcher.compile(null).matches(URI.create("https://api.github.com"))).isFalse();
+    }
+
+    @Test
+    void rejectsInvalidPatterns() {
+        assertThatThrownBy(() -> DomainMatcher.compile(List.of("https://api.*.com")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DomainMatcher.compile(List.of("http://localhost:abc")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DomainMatcher.compile(List.of(" ")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,159 @@
+package com.company.agent.infrastructure.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class FileToolTest {
+
+    private final FileTool fileTool = new FileTool(mock(FileIndex.class));
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(fileTool, "maxReadBytes", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(fileTool, "mmapThreshold", DataSize.ofMegabytes(16));
+        ReflectionTestUtils.setField(fileTool, "maxLineBytes", DataSize.ofKilobytes(8));
+        ReflectionTestUtils.setField(fileTool, "defaultPageSize", 200);
+        ReflectionTestUtils.setField(fileTool, "maxPageSize", 1000);
+        ReflectionTestUtils.setField(fileTool, "maxFindDepth", 10);
+        ReflectionTestUtils.setField(fileTool, "grepMaxScanBytes", DataSize.ofMegabytes(256));
+        ReflectionTestUtils.setField(fileTool, "grepTimeout", Duration.ofSeconds(5));
+
+        directory = Files.createDirectories(Paths.get(FileTool.ALLOWED_BASE_PATH, "test-" + UUID.randomUUID()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    void rangeReadStopsBeforeASplitUtf8Character() throws IOException {
+        // 'é' ocupa 2 bytes e '😀' ocupa 4
+        String path = write("range.txt", "aé😀b");
+
+        FileTool.Response first = fileTool.apply(range(path, 0L, 2));
+        assertThat(first.content()).isEqualTo("a");
+        assertThat(first.nextOffset()).isEqualTo(1L);
+
+        FileTool.Response second = fileTool.apply(range(path, first.nextOffset(), 4));
+        assertThat(second.content()).isEqualTo("é");
+        assertThat(second.nextOffset()).isEqualTo(3L);
+
+        FileTool.Response third = fileTool.apply(range(path, second.nextOffset(), 4));
+        assertThat(third.content()).isEqualTo("😀");
+
+        FileTool.Response last = fileTool.apply(range(path, third.nextOffset(), 4));
+        assertThat(last.content()).isEqualTo("b");
+        assertThat(last.nextOffset()).isNull();
+    }
+
+    @Test
+    void tailReturnsTheLastLinesAcrossBlocks() throws IOException {
+        // ~30 KB: as últimas 100 linhas atravessam mais de um bloco de leitura
+        String path = write("tail.log", lines(1, 300, n -> "linha " + n + " " + "x".repeat(90)));
+
+        FileTool.Response response = fileTool.apply(operation("TAIL", path, null, 100));
+
+        assertThat(response.success()).isTrue();
+        assertThat(response.content()).isEqualTo(lines(201, 300, n -> "linha " + n + " " + "x".repeat(90)));
+    }
+
+    @Test
+    void tailWithinTheByteBudgetStartsOnACharacterBoundary() throws IOException {
+        ReflectionTestUtils.setField(fileTool, "maxReadBytes", DataSize.ofBytes(100));
+        String path = write("accents.txt", "é".repeat(1000) + "\n");
+
+        FileTool.Response response = fileTool.apply(operation("TAIL", path, null, 10));
+
+        assertThat(response.content()).doesNotContain("�");
+        // O limite cai no meio de um 'é': o byte de continuação inicial é descartado
+        assertThat(response.content()).isEqualTo("é".repeat(49) + "\n");
+    }
+
+    @Test
+    void grepContinuesFromNextLineWhenTheOutputBudgetIsReached() throws IOException {
+        ReflectionTestUtils.setField(fileTool, "maxReadBytes", DataSize.ofBytes(64));
+        String path = write("grep.log", lines(1, 40, n -> n % 2 == 0 ? "ERROR evento " + n : "INFO evento " + n));
+
+        List<String> found = grepAll(path, "ERROR");
+
+        assertThat(found).isEqualTo(IntStream.rangeClosed(1, 40)
+                .filter(n -> n % 2 == 0)
+                .mapToObj(n -> n + ": ERROR evento " + n)
+                .toList());
+    }
+
+    @Test
+    void grepContinuesFromNextLineWhenTheScanBudgetIsReached() throws IOException {
+        ReflectionTestUtils.setField(fileTool, "grepMaxScanBytes", DataSize.ofBytes(100));
+        String path = write("scan.log", lines(1, 200, n -> n % 50 == 0 ? "ERROR evento " + n : "INFO evento " + n));
+
+        List<String> found = grepAll(path, "ERROR");
+
+        assertThat(found).containsExactly("50: ERROR evento 50", "100: ERROR evento 100",
+                "150: ERROR evento 150", "200: ERROR evento 200");
+    }
+
+    @Test
+    void rejectsPathsOutsideTheBaseDirectory() {
+        FileTool.Response response = fileTool.apply(operation("READ", "../etc/passwd", null, null));
+
+        assertThat(response.success()).isFalse();
+        assertThat(response.message()).contains("Caminho não permitido");
+    }
+
+    private List<String> grepAll(String path, String pattern) {
+        List<String> found = new ArrayList<>();
+        Integer startLine = null;
+        int calls = 0;
+
+        do {
+            FileTool.Response response = fileTool.apply(new FileTool.Request("GREP", path, null, null, null,
+                    startLine, null, pattern, null, null));
+            assertThat(response.success()).isTrue();
+            response.content().lines().forEach(found::add);
+            startLine = response.nextLine() != null ? response.nextLine().intValue() : null;
+            assertThat(++calls).isLessThan(1000);
+        } while (startLine != null);
+
+        return found;
+    }
+
+    private String write(String name, String content) throws IOException {
+        Files.writeString(directory.resolve(name), content, StandardCharsets.UTF_8);
+        return directory.getFileName() + "/" + name;
+    }
+
+    private static String lines(int from, int to, IntFunction<String> line) {
+        return IntStream.rangeClosed(from, to).mapToObj(line).collect(Collectors.joining("\n", "", "\n"));
+    }
+
+    private static FileTool.Request range(String path, Long offset, Integer length) {
+        return new FileTool.Request("READ", path, null, offset, length, null, null, null, null, null);
+    }
+
+    private static FileTool.Request operation(String operation, String path, Integer startLine, Integer lineCount) {
+        return new FileTool.Request(operation, path, null, null, null, startLine, lineCount, null, null, null);
+    }
+}
@@ -0,0 +1,116 @@
+package com.company.agent.infrastructure.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryValidatorTest {
+
+    private final QueryValidator validator = new QueryValidator(new SimpleMeterRegistry(), 100);
+
+    @Test
+    void normalizesWhitespaceAndCommentsOutsideLiterals() {
+        QueryValidator.ValidatedQuery query = validator.validate(
+                "SELECT  'a  -- b' /* comentário */\n  FROM t -- fim\n WHERE x = 1");
+
+        assertThat(query.sql()).isEqualTo("SELECT 'a  -- b' FROM t WHERE x = 1");
+        assertThat(query.kind()).isEqualTo(QueryValidator.Kind.SELECT);
+    }
+
+    @Test
+    void formattingVariantsShareTheSameHash() {
+        String compact = validator.validate("SELECT * FROM t WHERE id = ?").hash();
+        String formatted = validator.validate("SELECT *\n  FROM t\n WHERE id = ?  -- por id").hash();
+
+        assertThat(formatted).isEqualTo(compact);
+    }
+
+    @Test
+    void countsOnlyPlaceholdersOutsideLiterals() {
+        QueryValidator.ValidatedQuery query = validator.validate(
+                "SELECT * FROM t WHERE a = ? AND b = '?' AND c = \"?\" AND d = $$?$$ AND e = $tag$ ? $tag$ AND f = ?");
+
+        assertThat(query.parameterCount()).isEqualTo(2);
+    }
+
+    @Test
+    void doubleQuestionMarkIsTheEscapedJsonbOperator() {
+        QueryValidator.ValidatedQuery query = validator.validate(
+                "SELECT * FROM t WHERE data ?? 'key' AND data ??| array['a'] AND id = ?");
+
+        assertThat(query.parameterCount()).isEqualTo(1);
+        assertThat(query.sql()).contains("data ?? 'key'").contains("data ??| array['a']");
+    }
+
+    @Test
+    void backslashEscapesOnlyInsideEscapeStrings() {
+        assertThat(validator.validate("SELECT E'it\\'s; ok' FROM t").sql())
+                .isEqualTo("SELECT E'it\\'s; ok' FROM t");
+
+        // Em literal comum a barra não escapa: a aspa fecha o literal e o ';' seguinte separa statements
+        assertThatThrownBy(() -> validator.validate("SELECT 'a\\'; DELETE FROM t; --'"))
+                .isInstanceOf(SecurityException.class);
+    }
+
+    @Test
+    void semicolonsInsideLiteralsAndTrailingSemicolonsAreAccepted() {
+        assertThat(validator.validate("SELECT ';' FROM t;;").sql()).isEqualTo("SELECT ';' FROM t");
+        assertThat(validator.validate("SELECT $body$ a; b $body$ FROM t").sql())
+                .isEqualTo("SELECT $body$ a; b $body$ FROM t");
+    }
+
+    @Test
+    void rejectsMultipleStatements() {
+        assertThatThrownBy(() -> validator.validate("SELECT 1 FROM t; DELETE FROM t"))
+                .isInstanceOf(SecurityException.class)
+                .hasMessageContaining("Apenas um statement");
+    }
+
+    @Test
+    void rejectsUnterminatedLiteralsAndComments() {
+        assertThatThrownBy(() -> validator.validate("SELECT 'abc FROM t"))
+                .isInstanceOf(SecurityException.class)
+                .hasMessageContaining("Literal não terminado");
+        assertThatThrownBy(() -> validator.validate("SELECT $$abc FROM t"))
+                .isInstanceOf(SecurityException.class)
+                .hasMessageContaining("Literal não terminado");
+        assertThatThrownBy(() -> validator.validate("SELECT 1 /* aberto"))
+                .isInstanceOf(SecurityException.class)
+                .hasMessageContaining("Comentário não terminado");
+    }
+
+    @Test
+    void rejectsStatementsOtherThanDml() {
+        assertThatThrownBy(() -> validator.validate("DROP TABLE t"))
+                .isInstanceOf(SecurityException.class);
+        assertThatThrownBy(() -> validator.validate("SELECTED FROM t"))
+                .isInstanceOf(SecurityException.class);
+    }
+
+    @Test
+    void cachedRejectionIsRethrownOnEveryCall() {
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> validator.validate("TRUNCATE t"))
+                    .isInstanceOf(SecurityException.class);
+        }
+    }
+
+    @Test
+    void onlySelectsArePaged() {
+        assertThat(validator.validate("SELECT id FROM t").pagedSql())
+                .isEqualTo("SELECT * FROM (SELECT id FROM t) agent_page OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        assertThat(validator.validate("UPDATE t SET a = 1").pagedSql()).isNull();
+    }
+
+    @Test
+    void detectsOnlyTopLevelOrderBy() {
+        assertThat(validator.validate("SELECT * FROM t ORDER BY id").ordered()).isTrue();
+        assertThat(validator.validate("SELECT * FROM t order\n by id").ordered()).isTrue();
+        assertThat(validator.validate("SELECT * FROM (SELECT * FROM t ORDER BY id) x").ordered()).isFalse();
+        assertThat(validator.validate("SELECT row_number() OVER (ORDER BY id) FROM t").ordered()).isFalse();
+        assertThat(validator.validate("SELECT 'ORDER BY' FROM t").ordered()).isFalse();
+        assertThat(validator.validate("SELECT border_by FROM t").ordered()).isFalse();
+    }
+}